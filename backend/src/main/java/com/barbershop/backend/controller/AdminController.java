@@ -9,13 +9,23 @@ import com.barbershop.backend.repository.BarberRepository;
 import com.barbershop.backend.repository.UserRepository;
 import com.barbershop.backend.repository.LeadRepository;
 import com.barbershop.backend.repository.OpportunityRepository;
+import com.barbershop.backend.service.ArchiveService;
+import com.barbershop.backend.service.AvailabilityIndexService;
 import com.barbershop.backend.service.CRMService;
+import com.barbershop.backend.service.CommissionReportService;
+import com.barbershop.backend.service.CsvExportService;
+import com.barbershop.backend.service.SalesRollupService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -46,6 +56,28 @@ public class AdminController {
     @Autowired
     private CRMService crmService;
 
+    @Autowired
+    private AvailabilityIndexService availabilityIndex;
+
+    @Autowired
+    private ArchiveService archiveService;
+
+    @Autowired
+    private CommissionReportService commissionReportService;
+
+    @Autowired
+    private SalesRollupService rollupService;
+
+    @Autowired
+    private CsvExportService exportService;
+
+    private static final Map<String, String> REVENUE_GROUPS = Map.of(
+            "day", SalesRollupService.TOTAL,
+            "paymentMethod", SalesRollupService.PAYMENT_METHOD,
+            "barber", SalesRollupService.BARBER,
+            "service", SalesRollupService.SERVICE,
+            "product", SalesRollupService.PRODUCT);
+
     @GetMapping("/stats")
     public ResponseEntity<?> getStats() {
         Map<String, Long> stats = new HashMap<>();
@@ -197,6 +229,7 @@ public class AdminController {
             for (Appointment apt : barberAppointments) {
                 apt.setBarber(null);
                 appointmentRepository.save(apt);
+                availabilityIndex.index(apt);
             }
             barberRepository.delete(barber);
         });
@@ -207,6 +240,86 @@ public class AdminController {
                 new MessageResponse("User deleted successfully! Associated appointments preserved as unlinked/guest."));
     }
 
+    // Runs the nightly archiver now (e.g. after changing the horizon)
+    @PostMapping("/archive/run")
+    public ResponseEntity<?> runArchive() {
+        return ResponseEntity.ok(archiveService.archive());
+    }
+
+    // Per-barber commissions for [from, to] (inclusive); defaults to the current month so far
+    @GetMapping("/reports/commissions")
+    public ResponseEntity<?> getCommissionReport(@RequestParam(required = false) String from,
+            @RequestParam(required = false) String to) {
+        LocalDate toDate = to != null ? LocalDate.parse(to) : LocalDate.now();
+        LocalDate fromDate = from != null ? LocalDate.parse(from) : toDate.withDayOfMonth(1);
+        return ResponseEntity.ok(commissionReportService.report(fromDate, toDate));
+    }
+
+    // Revenue for [from, to] (inclusive) from the daily rollup; defaults to the current month so far.
+    // groupBy=day gives the total of each day; paymentMethod, barber, service and product give one
+    // row per key for the whole range, or per day and key with daily=true.
+    @GetMapping("/reports/revenue")
+    public ResponseEntity<?> getRevenueReport(@RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(defaultValue = "day") String groupBy,
+            @RequestParam(defaultValue = "false") boolean daily) {
+        LocalDate toDate = to != null ? LocalDate.parse(to) : LocalDate.now();
+        LocalDate fromDate = from != null ? LocalDate.parse(from) : toDate.withDayOfMonth(1);
+        String dimension = REVENUE_GROUPS.get(groupBy);
+        if (dimension == null) {
+            throw new RuntimeException("Error: groupBy must be one of " + REVENUE_GROUPS.keySet() + ".");
+        }
+        if (daily || SalesRollupService.TOTAL.equals(dimension)) {
+            return ResponseEntity.ok(rollupService.daily(dimension, fromDate, toDate));
+        }
+        return ResponseEntity.ok(rollupService.totals(dimension, fromDate, toDate));
+    }
+
+    // Rebuilds the rollup from the raw sales; defaults to the first sale up to today
+    @PostMapping("/reports/revenue/rebuild")
+    public ResponseEntity<?> rebuildRevenue(@RequestParam(required = false) String from,
+            @RequestParam(required = false) String to) {
+        LocalDate toDate = to != null ? LocalDate.parse(to) : LocalDate.now();
+        LocalDate fromDate = from != null ? LocalDate.parse(from) : rollupService.firstSaleDay().orElse(toDate);
+        Map<String, Object> result = rollupService.rebuild(fromDate, toDate);
+        if (result.isEmpty()) {
+            throw new RuntimeException("Error: A rebuild is already running.");
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    // CSV of every sale line in [from, to] (inclusive), streamed from the database as it is read;
+    // defaults to the current month so far
+    @GetMapping("/export/sales")
+    public ResponseEntity<StreamingResponseBody> exportSales(@RequestParam(required = false) String from,
+            @RequestParam(required = false) String to) {
+        LocalDate toDate = to != null ? LocalDate.parse(to) : LocalDate.now();
+        LocalDate fromDate = from != null ? LocalDate.parse(from) : toDate.withDayOfMonth(1);
+        return csv("ventas", fromDate, toDate, out -> exportService.exportSales(fromDate, toDate, out));
+    }
+
+    // CSV of every appointment starting in [from, to] (inclusive); defaults to the current month so far
+    @GetMapping("/export/appointments")
+    public ResponseEntity<StreamingResponseBody> exportAppointments(@RequestParam(required = false) String from,
+            @RequestParam(required = false) String to) {
+        LocalDate toDate = to != null ? LocalDate.parse(to) : LocalDate.now();
+        LocalDate fromDate = from != null ? LocalDate.parse(from) : toDate.withDayOfMonth(1);
+        return csv("citas", fromDate, toDate, out -> exportService.exportAppointments(fromDate, toDate, out));
+    }
+
+    private static ResponseEntity<StreamingResponseBody> csv(String name, LocalDate from, LocalDate to,
+            StreamingResponseBody body) {
+        // Checked here: once the body streams the status is already sent
+        if (to.isBefore(from)) {
+            throw new RuntimeException("Error: 'to' must not be before 'from'.");
+        }
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + name + "_" + from + "_" + to + ".csv\"")
+                .body(body);
+    }
+
     // CRM Endpoints Consolidated here for reliability
     @GetMapping("/crm/leads")
     public List<Lead> getAllLeads() {
@@ -3,26 +3,39 @@ package com.barbershop.backend.controller;
 import com.barbershop.backend.model.Appointment;
 import com.barbershop.backend.model.Barber;
 import com.barbershop.backend.model.User;
+import com.barbershop.backend.payload.request.AppointmentPageRequest;
 import com.barbershop.backend.payload.request.AppointmentRequest;
+import com.barbershop.backend.payload.response.AppointmentSummary;
+import com.barbershop.backend.payload.response.AvailableSlotResponse;
+import com.barbershop.backend.payload.response.KeysetPage;
 import com.barbershop.backend.payload.response.MessageResponse;
 import com.barbershop.backend.repository.AppointmentRepository;
 import com.barbershop.backend.repository.BarberRepository;
 import com.barbershop.backend.repository.UserRepository;
 import com.barbershop.backend.security.UserDetailsImpl;
+import com.barbershop.backend.service.AppointmentBroadcaster;
+import com.barbershop.backend.service.AppointmentQueryService;
+import com.barbershop.backend.service.AvailabilityIndexService;
+import com.barbershop.backend.service.BookingService;
+import com.barbershop.backend.service.SlotSearchService;
+import com.barbershop.backend.service.WaitlistService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.annotation.PostConstruct;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/appointments")
@@ -43,6 +56,27 @@ public class AppointmentController {
     @Autowired
     PasswordEncoder encoder;
 
+    @Autowired
+    AvailabilityIndexService availabilityIndex;
+
+    @Autowired
+    SlotSearchService slotSearchService;
+
+    @Autowired
+    BookingService bookingService;
+
+    @Autowired
+    AppointmentQueryService appointmentQueryService;
+
+    @Autowired
+    AppointmentBroadcaster broadcaster;
+
+    @Autowired
+    WaitlistService waitlistService;
+
+    private static final int SLOT_STEP_MINUTES = 30;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @PostConstruct
     public void init() {
         // Ensure admin user exists and has correct password
@@ -63,16 +97,19 @@ public class AppointmentController {
         }
     }
 
+    // List endpoints always page by (startTime, id): size defaults to 50 and is capped at 200,
+    // from/to narrow the window; the body stays a plain array and the next cursor travels in
+    // X-Next-Cursor. includeHistory=true also pages through archived appointments.
     @GetMapping
     @PreAuthorize("isAuthenticated()")
-    public List<Appointment> getUserAppointments() {
+    public ResponseEntity<List<AppointmentSummary>> getUserAppointments(AppointmentPageRequest page) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
         if (userDetails.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"))) {
-            return appointmentRepository.findAll();
+            return pageResponse(appointmentQueryService.findAll(page));
         }
-        return appointmentRepository.findByUserId(userDetails.getId());
+        return pageResponse(appointmentQueryService.findByUser(userDetails.getId(), page));
     }
 
     @PostMapping
@@ -89,11 +126,20 @@ public class AppointmentController {
         Appointment appointment = new Appointment();
         appointment.setBarber(barber);
         appointment.setStartTime(appointmentRequest.getStartTime());
-        // Fix End Time Logic
+
+        if (appointmentRequest.getAppointmentTypeId() != null) {
+            com.barbershop.backend.model.AppointmentType type = appointmentTypeRepository
+                    .findById(appointmentRequest.getAppointmentTypeId())
+                    .orElse(null); // Or default
+            appointment.setAppointmentType(type);
+        }
+
+        // Fix End Time Logic: explicit end, else the service duration, else 1 hour
         if (appointmentRequest.getEndTime() != null) {
             appointment.setEndTime(appointmentRequest.getEndTime());
         } else {
-            appointment.setEndTime(appointmentRequest.getStartTime().plusHours(1));
+            appointment.setEndTime(appointmentRequest.getStartTime()
+                    .plusMinutes(durationOf(appointment.getAppointmentType())));
         }
 
         appointment.setStatus(Appointment.Status.BOOKED);
@@ -116,13 +162,6 @@ public class AppointmentController {
 
         appointment.setNotes(appointmentRequest.getNotes());
 
-        if (appointmentRequest.getAppointmentTypeId() != null) {
-            com.barbershop.backend.model.AppointmentType type = appointmentTypeRepository
-                    .findById(appointmentRequest.getAppointmentTypeId())
-                    .orElse(null); // Or default
-            appointment.setAppointmentType(type);
-        }
-
         // Set Audit Fields
         appointment.setCreatedAt(LocalDateTime.now());
         // Use existing authentication variable from top of method
@@ -135,7 +174,9 @@ public class AppointmentController {
             appointment.setCreationSource("WEB_APP_PUBLIC");
         }
 
-        appointmentRepository.save(appointment);
+        // Serialized per barber and day; a lost race surfaces as 409 with alternatives
+        bookingService.book(appointment);
+        broadcaster.created(AppointmentSummary.from(appointment));
 
         return ResponseEntity.ok(new MessageResponse("Appointment booked successfully!"));
     }
@@ -143,62 +184,76 @@ public class AppointmentController {
     @GetMapping("/available-slots")
     public List<String> getAvailableSlots(
             @RequestParam Long barberId,
-            @RequestParam String date) {
-        // ... (method same)
+            @RequestParam String date,
+            @RequestParam(required = false) Long appointmentTypeId) {
         LocalDate selectedDate = LocalDate.parse(date);
 
-        // Get all appointments for this barber on this date
-        LocalDateTime startOfDay = selectedDate.atStartOfDay();
-        LocalDateTime endOfDay = selectedDate.atTime(LocalTime.MAX);
-
-        List<Appointment> bookedAppointments = appointmentRepository.findByBarberIdAndStartTimeBetween(
-                barberId, startOfDay, endOfDay);
-
-        // Business hours: 9am to 6pm, 1 hour slots
-        List<String> allSlots = new ArrayList<>();
-        for (int hour = 9; hour < 18; hour++) {
-            LocalTime slotTime = LocalTime.of(hour, 0);
-            LocalDateTime slotDateTime = selectedDate.atTime(slotTime);
-
-            // Check if this slot is already booked
-            boolean isBooked = bookedAppointments.stream()
-                    .anyMatch(appt -> appt.getStartTime().equals(slotDateTime));
+        // Without a service type keep the classic 1 hour grid; with one, offer every
+        // half hour where the whole service fits. Answered from the in-memory index.
+        int duration = AvailabilityIndexService.DEFAULT_DURATION_MINUTES;
+        int step = 60;
+        if (appointmentTypeId != null) {
+            duration = durationOf(appointmentTypeRepository.findById(appointmentTypeId)
+                    .orElseThrow(() -> new RuntimeException("Error: Appointment type not found.")));
+            step = SLOT_STEP_MINUTES;
+        }
 
-            // Don't show past slots for today
-            if (selectedDate.equals(LocalDate.now()) && slotDateTime.isBefore(LocalDateTime.now())) {
-                continue;
-            }
+        return availabilityIndex.findFreeWindows(barberId, selectedDate, duration, step).stream()
+                .map(LocalDateTime::toString)
+                .collect(Collectors.toList());
+    }
 
-            if (!isBooked) {
-                allSlots.add(slotDateTime.toString());
-            }
+    @GetMapping("/next-available")
+    public List<AvailableSlotResponse> getNextAvailable(
+            @RequestParam Long appointmentTypeId,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(defaultValue = "5") int limit) {
+        int duration = durationOf(appointmentTypeRepository.findById(appointmentTypeId)
+                .orElseThrow(() -> new RuntimeException("Error: Appointment type not found.")));
+
+        LocalDate fromDate = from != null ? LocalDate.parse(from) : LocalDate.now();
+        LocalDate toDate = to != null ? LocalDate.parse(to) : fromDate.plusDays(13);
+        // Keep the fan-out bounded
+        LocalDate maxDate = fromDate.plusDays(SlotSearchService.MAX_RANGE_DAYS - 1);
+        if (toDate.isAfter(maxDate)) {
+            toDate = maxDate;
         }
+        int cappedLimit = Math.max(1, Math.min(limit, SlotSearchService.MAX_RESULTS));
 
-        return allSlots;
+        return slotSearchService.findNextAvailable(fromDate, toDate, duration, SLOT_STEP_MINUTES, cappedLimit);
     }
 
     @GetMapping("/barber/{barberId}")
-    public List<Appointment> getBarberAppointments(@PathVariable Long barberId) {
-        return appointmentRepository.findByBarberId(barberId);
+    public ResponseEntity<List<AppointmentSummary>> getBarberAppointments(@PathVariable Long barberId,
+            AppointmentPageRequest page) {
+        return pageResponse(appointmentQueryService.findByBarber(barberId, page));
     }
 
     @GetMapping("/all")
-    public List<Appointment> getAllAppointmentsPublic() {
-        return appointmentRepository.findAll();
+    public ResponseEntity<List<AppointmentSummary>> getAllAppointmentsPublic(AppointmentPageRequest page) {
+        return pageResponse(appointmentQueryService.findAll(page));
     }
 
     @GetMapping("/today")
     @PreAuthorize("isAuthenticated()")
-    public List<Appointment> getTodayAppointments() {
+    public List<AppointmentSummary> getTodayAppointments() {
         LocalDate today = LocalDate.now();
         LocalDateTime startOfDay = today.atStartOfDay();
         LocalDateTime endOfDay = today.atTime(LocalTime.MAX);
-        return appointmentRepository.findByStartTimeBetween(startOfDay, endOfDay);
+        return appointmentRepository.findSummariesByStartTimeBetween(startOfDay, endOfDay);
+    }
+
+    // Live front desk board: today's appointments once, then create/update/delete events
+    @GetMapping(value = "/today/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("isAuthenticated()")
+    public SseEmitter streamTodayAppointments() {
+        return broadcaster.subscribe();
     }
 
     @GetMapping("/my-barber-appointments")
     @PreAuthorize("hasAuthority('ROLE_BARBER')")
-    public List<Appointment> getMyBarberAppointments() {
+    public ResponseEntity<List<AppointmentSummary>> getMyBarberAppointments(AppointmentPageRequest page) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
@@ -206,7 +261,7 @@ public class AppointmentController {
         Barber barber = barberRepository.findByUserId(userDetails.getId())
                 .orElseThrow(() -> new RuntimeException("Error: Barber profile not found for this user."));
 
-        return appointmentRepository.findByBarberId(barber.getId());
+        return pageResponse(appointmentQueryService.findByBarber(barber.getId(), page));
     }
 
     @GetMapping("/{id}")
@@ -237,6 +292,11 @@ public class AppointmentController {
         }
 
         appointmentRepository.delete(appointment);
+        availabilityIndex.remove(appointment.getId());
+        broadcaster.deleted(appointment.getId());
+        if (appointment.getBarber() != null && appointment.getStatus() != Appointment.Status.CANCELLED) {
+            waitlistService.slotFreed(appointment.getBarber().getId(), appointment.getStartTime());
+        }
         return ResponseEntity.ok(new MessageResponse("Appointment deleted successfully!"));
     }
 
@@ -246,6 +306,11 @@ public class AppointmentController {
         Appointment appointment = appointmentRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Error: Appointment not found."));
 
+        Long previousBarberId = appointment.getBarber() != null ? appointment.getBarber().getId() : null;
+        LocalDateTime previousStart = appointment.getStartTime();
+        LocalDateTime previousEnd = appointment.getEndTime();
+        Appointment.Status previousStatus = appointment.getStatus();
+
         // Update barber if provided
         if (request.getBarberId() != null) {
             Barber barber = barberRepository.findById(request.getBarberId())
@@ -253,15 +318,24 @@ public class AppointmentController {
             appointment.setBarber(barber);
         }
 
+        // Before the times, so a default end time uses the new service's duration
+        if (request.getAppointmentTypeId() != null) {
+            com.barbershop.backend.model.AppointmentType type = appointmentTypeRepository
+                    .findById(request.getAppointmentTypeId())
+                    .orElseThrow(() -> new RuntimeException("Error: Appointment type not found."));
+            appointment.setAppointmentType(type);
+        }
+
         // Update time if provided
         if (request.getStartTime() != null) {
             appointment.setStartTime(request.getStartTime());
 
-            // If EndTime is provided, use it. Otherwise, default to +1 hour.
+            // If EndTime is provided, use it. Otherwise, default to the service duration.
             if (request.getEndTime() != null) {
                 appointment.setEndTime(request.getEndTime());
             } else {
-                appointment.setEndTime(request.getStartTime().plusHours(1));
+                appointment.setEndTime(request.getStartTime()
+                        .plusMinutes(durationOf(appointment.getAppointmentType())));
             }
         } else if (request.getEndTime() != null) {
             // Start time wasn't changed, but End Time was
@@ -272,12 +346,6 @@ public class AppointmentController {
         if (request.getNotes() != null) {
             appointment.setNotes(request.getNotes());
         }
-        if (request.getAppointmentTypeId() != null) {
-            com.barbershop.backend.model.AppointmentType type = appointmentTypeRepository
-                    .findById(request.getAppointmentTypeId())
-                    .orElseThrow(() -> new RuntimeException("Error: Appointment type not found."));
-            appointment.setAppointmentType(type);
-        }
 
         // Update status if provided
         if (request.getStatus() != null) {
@@ -288,7 +356,39 @@ public class AppointmentController {
             }
         }
 
-        appointmentRepository.save(appointment);
+        // Only re-validate when the booking actually moved or grew
+        boolean moved = appointment.getBarber() != null
+                && (!Objects.equals(appointment.getBarber().getId(), previousBarberId)
+                        || !Objects.equals(appointment.getStartTime(), previousStart)
+                        || !Objects.equals(appointment.getEndTime(), previousEnd));
+        if (moved && appointment.getStatus() != Appointment.Status.CANCELLED) {
+            bookingService.book(appointment);
+        } else {
+            appointmentRepository.save(appointment);
+            availabilityIndex.index(appointment);
+        }
+        broadcaster.updated(AppointmentSummary.from(appointment));
+
+        // The previous slot opened up for the waitlist if the booking left it
+        if (previousBarberId != null && previousStatus != Appointment.Status.CANCELLED
+                && (moved || appointment.getStatus() == Appointment.Status.CANCELLED)) {
+            waitlistService.slotFreed(previousBarberId, previousStart);
+        }
         return ResponseEntity.ok(new MessageResponse("Appointment updated successfully!"));
     }
+
+    private static <T> ResponseEntity<List<T>> pageResponse(KeysetPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    private static int durationOf(com.barbershop.backend.model.AppointmentType type) {
+        if (type == null || type.getDurationMinutes() == null || type.getDurationMinutes() <= 0) {
+            return AvailabilityIndexService.DEFAULT_DURATION_MINUTES;
+        }
+        return type.getDurationMinutes();
+    }
 }
@@ -0,0 +1,58 @@
+package com.barbershop.backend.controller;
+
+import com.barbershop.backend.model.AppointmentSeries;
+import com.barbershop.backend.payload.request.SeriesRequest;
+import com.barbershop.backend.payload.response.AppointmentSummary;
+import com.barbershop.backend.repository.AppointmentRepository;
+import com.barbershop.backend.repository.AppointmentSeriesRepository;
+import com.barbershop.backend.service.SeriesService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+// Recurring bookings entered by reception
+@RestController
+@RequestMapping("/api/appointments/series")
+@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+public class AppointmentSeriesController {
+
+    @Autowired
+    private SeriesService seriesService;
+
+    @Autowired
+    private AppointmentSeriesRepository seriesRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @GetMapping
+    public List<AppointmentSeries> getAllSeries() {
+        return seriesRepository.findAll();
+    }
+
+    @GetMapping("/{id}/occurrences")
+    public List<AppointmentSummary> getOccurrences(@PathVariable Long id) {
+        return appointmentRepository.findSummariesBySeriesId(id);
+    }
+
+    // Response: the series, how many occurrences were booked and the skipped (busy) start times
+    @PostMapping
+    public ResponseEntity<?> createSeries(@RequestBody SeriesRequest request) {
+        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+        return ResponseEntity.ok(seriesService.create(request, email));
+    }
+
+    @PutMapping("/{id}")
+    public ResponseEntity<?> updateSeries(@PathVariable Long id, @RequestBody SeriesRequest request) {
+        return ResponseEntity.ok(seriesService.update(id, request));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> cancelSeries(@PathVariable Long id) {
+        return ResponseEntity.ok(seriesService.cancel(id));
+    }
+}
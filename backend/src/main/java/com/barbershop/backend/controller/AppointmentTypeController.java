@@ -3,6 +3,7 @@ package com.barbershop.backend.controller;
 import com.barbershop.backend.model.AppointmentType;
 import com.barbershop.backend.repository.AppointmentTypeRepository;
 import com.barbershop.backend.payload.response.MessageResponse;
+import com.barbershop.backend.service.CommissionReportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -28,6 +29,9 @@ public class AppointmentTypeController {
         if (appointmentTypeRepository.findByName(type.getName()).isPresent()) {
             return ResponseEntity.badRequest().body(new MessageResponse("Error: Type name already exists."));
         }
+        if (type.getCommissionRate() != null) {
+            CommissionReportService.validRate(type.getCommissionRate());
+        }
         appointmentTypeRepository.save(type);
         return ResponseEntity.ok(new MessageResponse("Appointment Type created successfully!"));
     }
@@ -52,6 +56,10 @@ public class AppointmentTypeController {
                     type.setDurationMinutes(typeDetails.getDurationMinutes());
                     type.setColor(typeDetails.getColor());
                     type.setDescription(typeDetails.getDescription());
+                    // Older clients send the object without a rate; keep the current one
+                    if (typeDetails.getCommissionRate() != null) {
+                        type.setCommissionRate(CommissionReportService.validRate(typeDetails.getCommissionRate()));
+                    }
                     appointmentTypeRepository.save(type);
                     return ResponseEntity.ok(new MessageResponse("Appointment Type updated successfully!"));
                 })
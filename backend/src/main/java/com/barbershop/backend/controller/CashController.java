@@ -1,16 +1,29 @@
 package com.barbershop.backend.controller;
 
 import com.barbershop.backend.model.*;
+import com.barbershop.backend.payload.response.BarberSalesTotal;
+import com.barbershop.backend.payload.response.CashMovement;
+import com.barbershop.backend.payload.response.DailySalesTotal;
+import com.barbershop.backend.payload.response.KeysetPage;
+import com.barbershop.backend.payload.response.RevenueRow;
 import com.barbershop.backend.repository.*;
+import com.barbershop.backend.service.CashHistoryService;
+import com.barbershop.backend.service.CashLedgerService;
+import com.barbershop.backend.service.SalesRollupService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/cash")
@@ -29,42 +42,45 @@ public class CashController {
     @Autowired
     private UserRepository userRepository;
 
-    @GetMapping("/balance")
-    public ResponseEntity<?> getBalance() {
-        // Find last cut
-        Optional<CashCut> lastCutOpt = cutRepository.findTopByOrderByTimestampDesc();
-        LocalDateTime startDate = lastCutOpt.map(CashCut::getTimestamp).orElse(LocalDateTime.of(2000, 1, 1, 0, 0));
+    @Autowired
+    private CashLedgerService ledgerService;
 
-        // Sum Sales (CASH only ideally, but user asked for "everything paid", let's
-        // separate)
-        // For "Cash in Box" (Caja), usually only CASH matters.
-        // Let's return a detailed object.
+    @Autowired
+    private CashHistoryService historyService;
 
-        List<Sale> sales = saleRepository.findByDateAfter(startDate);
-        List<CashWithdrawal> withdrawals = withdrawalRepository.findByTimestampAfter(startDate);
+    @Autowired
+    private SalesRollupService rollupService;
 
-        double totalCashSales = sales.stream()
-                .filter(s -> "CASH".equalsIgnoreCase(s.getPaymentMethod()))
-                .mapToDouble(Sale::getTotalAmount).sum();
+    @Autowired
+    private ObjectMapper objectMapper;
 
-        double totalOtherSales = sales.stream()
-                .filter(s -> !"CASH".equalsIgnoreCase(s.getPaymentMethod()))
-                .mapToDouble(Sale::getTotalAmount).sum();
+    @GetMapping("/balance")
+    public ResponseEntity<?> getBalance() {
+        Optional<CashCut> lastCutOpt = cutRepository.findTopByOrderByTimestampDesc();
 
-        double totalWithdrawals = withdrawals.stream().mapToDouble(CashWithdrawal::getAmount).sum();
+        // Running totals since the last cut; no movement rows are read
+        Map<String, Double> totals = ledgerService.totals();
+        Map<String, Double> salesByPaymentMethod = salesByPaymentMethod(totals);
+
+        // For "Cash in Box" (Caja) only CASH matters; revenue counts every payment method
+        double totalCashSales = salesByPaymentMethod.getOrDefault("CASH", 0.0);
+        double totalRevenue = salesByPaymentMethod.values().stream().mapToDouble(Double::doubleValue).sum();
+        double totalWithdrawals = totals.getOrDefault(CashLedgerService.WITHDRAWAL, 0.0);
 
         double cashBalance = totalCashSales - totalWithdrawals;
 
         Map<String, Object> response = new HashMap<>();
         response.put("cashBalance", cashBalance);
-        response.put("totalRevenue", totalCashSales + totalOtherSales);
+        response.put("totalRevenue", totalRevenue);
         response.put("totalWithdrawals", totalWithdrawals);
+        response.put("salesByPaymentMethod", salesByPaymentMethod);
         response.put("lastCutDate", lastCutOpt.map(CashCut::getTimestamp).orElse(null));
 
         return ResponseEntity.ok(response);
     }
 
     @PostMapping("/withdraw")
+    @Transactional
     public ResponseEntity<?> withdraw(@RequestBody CashWithdrawal withdrawal) {
         String email = SecurityContextHolder.getContext().getAuthentication().getName();
         User user = userRepository.findByEmail(email).orElseThrow(() -> new RuntimeException("User not found"));
@@ -73,26 +89,20 @@ public class CashController {
         withdrawal.setTimestamp(LocalDateTime.now());
 
         withdrawalRepository.save(withdrawal);
+        ledgerService.recordWithdrawal(withdrawal);
         return ResponseEntity.ok(Map.of("message", "Withdrawal registered successfully"));
     }
 
     @PostMapping("/cut")
+    @Transactional
     public ResponseEntity<?> performCut(@RequestBody Map<String, Object> payload) {
         String email = SecurityContextHolder.getContext().getAuthentication().getName();
         User user = userRepository.findByEmail(email).orElseThrow(() -> new RuntimeException("User not found"));
 
-        // recalculate expected amount to verify
-        // Find last cut
-        Optional<CashCut> lastCutOpt = cutRepository.findTopByOrderByTimestampDesc();
-        LocalDateTime startDate = lastCutOpt.map(CashCut::getTimestamp).orElse(LocalDateTime.of(2000, 1, 1, 0, 0));
-
-        List<Sale> sales = saleRepository.findByDateAfter(startDate);
-        List<CashWithdrawal> withdrawals = withdrawalRepository.findByTimestampAfter(startDate);
-
-        double totalCashSales = sales.stream()
-                .filter(s -> "CASH".equalsIgnoreCase(s.getPaymentMethod()))
-                .mapToDouble(Sale::getTotalAmount).sum();
-        double totalWithdrawals = withdrawals.stream().mapToDouble(CashWithdrawal::getAmount).sum();
+        // Expected amount from the ledger, which is emptied for the next period in this same transaction
+        Map<String, Double> totals = ledgerService.closePeriod();
+        double totalCashSales = totals.getOrDefault(CashLedgerService.saleBucket("CASH"), 0.0);
+        double totalWithdrawals = totals.getOrDefault(CashLedgerService.WITHDRAWAL, 0.0);
         double expectedAmount = totalCashSales - totalWithdrawals;
 
         CashCut cut = new CashCut();
@@ -111,58 +121,78 @@ public class CashController {
         return ResponseEntity.ok(Map.of("message", "Cash Cut performed successfully", "cut", cut));
     }
 
-    @GetMapping("/history")
-    public ResponseEntity<?> getHistory() {
-        // Return mixed list of latest 50 actions?
-        // Or all actions since last cut?
-        // Let's return all actions since last cut for the "Current Register" view
-        // And maybe an endpoint for "Past Cuts".
+    // Sales report for a date range (to inclusive, defaults to today), aggregated by the database
+    @GetMapping("/summary")
+    public ResponseEntity<?> getSummary(@RequestParam(required = false) String from,
+            @RequestParam(required = false) String to) {
+        LocalDate toDate = to != null ? LocalDate.parse(to) : LocalDate.now();
+        LocalDate fromDate = from != null ? LocalDate.parse(from) : toDate;
+        LocalDateTime start = fromDate.atStartOfDay();
+        LocalDateTime end = toDate.plusDays(1).atStartOfDay();
+
+        // Sales come from the daily rollup: one row per day and method instead of every sale
+        List<DailySalesTotal> byDay = new ArrayList<>();
+        Map<String, Double> byPaymentMethod = new TreeMap<>();
+        for (RevenueRow row : rollupService.daily(SalesRollupService.PAYMENT_METHOD, fromDate, toDate)) {
+            byDay.add(new DailySalesTotal(row.getDay(), row.getKey(), row.getTotal(), row.getSales()));
+            byPaymentMethod.merge(row.getKey(), row.getTotal(), Double::sum);
+        }
+        List<BarberSalesTotal> byBarber = new ArrayList<>();
+        for (RevenueRow row : rollupService.totals(SalesRollupService.BARBER, fromDate, toDate)) {
+            Long barberId = row.getKey().matches("\\d+") ? Long.valueOf(row.getKey()) : null;
+            byBarber.add(new BarberSalesTotal(barberId, row.getLabel(), row.getTotal(), row.getSales()));
+        }
+        byBarber.sort(Comparator.comparing(BarberSalesTotal::getBarberName,
+                Comparator.nullsLast(Comparator.naturalOrder())));
 
-        Optional<CashCut> lastCutOpt = cutRepository.findTopByOrderByTimestampDesc();
-        LocalDateTime startDate = lastCutOpt.map(CashCut::getTimestamp).orElse(LocalDateTime.of(2000, 1, 1, 0, 0));
-
-        List<Sale> sales = saleRepository.findByDateAfter(startDate);
-        List<CashWithdrawal> withdrawals = withdrawalRepository.findByTimestampAfter(startDate);
-
-        List<Map<String, Object>> history = new ArrayList<>();
-
-        for (Sale s : sales) {
-            Map<String, Object> item = new HashMap<>();
-            item.put("type", "SALE");
-            item.put("id", s.getId());
-            item.put("amount", s.getTotalAmount());
-            item.put("date", s.getDate());
-            StringBuilder desc = new StringBuilder("Venta #" + s.getId() + ": ");
-            if (s.getItems() != null && !s.getItems().isEmpty()) {
-                String itemSummary = s.getItems().stream()
-                        .map(i -> i.getItemName() + (i.getBarber() != null ? " (" + i.getBarber().getName() + ")" : ""))
-                        .collect(Collectors.joining(", "));
-                desc.append(itemSummary);
-            }
-            if (s.getClient() != null) {
-                desc.append(" | Cliente: ").append(s.getClient().getName());
-            } else if (s.getGuestName() != null && !s.getGuestName().isEmpty()) {
-                desc.append(" | Cliente: ").append(s.getGuestName());
+        Map<String, Object> response = new HashMap<>();
+        response.put("from", fromDate);
+        response.put("to", toDate);
+        response.put("totalRevenue", byPaymentMethod.values().stream().mapToDouble(Double::doubleValue).sum());
+        response.put("byPaymentMethod", byPaymentMethod);
+        response.put("byDay", byDay);
+        response.put("byBarber", byBarber);
+        response.put("totalWithdrawals", withdrawalRepository.sumBetween(start, end).getTotal());
+        return ResponseEntity.ok(response);
+    }
+
+    // Movements since the last cut, newest first. The whole period is streamed as it is
+    // merged, so the response is never held in memory.
+    @GetMapping(value = "/history", params = { "!cursor", "!size" })
+    public ResponseEntity<StreamingResponseBody> getHistory() {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartArray();
+                Iterator<CashMovement> movements = historyService.iterateCurrentPeriod();
+                while (movements.hasNext()) {
+                    json.writeObject(movements.next());
+                }
+                json.writeEndArray();
             }
-            item.put("description", desc.toString());
-            item.put("paymentMethod", s.getPaymentMethod());
-            item.put("user", s.getCreatedBy() != null ? s.getCreatedBy().getName() : "Sistema");
-            history.add(item);
-        }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
 
-        for (CashWithdrawal w : withdrawals) {
-            Map<String, Object> item = new HashMap<>();
-            item.put("type", "WITHDRAWAL");
-            item.put("id", w.getId());
-            item.put("amount", -w.getAmount()); // Negative for display
-            item.put("date", w.getTimestamp());
-            item.put("description", w.getDescription());
-            item.put("user", w.getPerformedBy() != null ? w.getPerformedBy().getName() : "Sistema");
-            history.add(item);
+    // Same history one keyset page at a time; the body stays a plain array and the next
+    // cursor travels in X-Next-Cursor.
+    @GetMapping("/history")
+    public ResponseEntity<List<CashMovement>> getHistoryPage(@RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        KeysetPage<CashMovement> page = historyService.page(cursor, size);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(AppointmentController.NEXT_CURSOR_HEADER, page.getNextCursor());
         }
+        return response.body(page.getItems());
+    }
 
-        history.sort((a, b) -> ((LocalDateTime) b.get("date")).compareTo((LocalDateTime) a.get("date")));
-
-        return ResponseEntity.ok(history);
+    private static Map<String, Double> salesByPaymentMethod(Map<String, Double> totals) {
+        Map<String, Double> byMethod = new HashMap<>();
+        totals.forEach((bucket, total) -> {
+            if (bucket.startsWith(CashLedgerService.SALE_PREFIX)) {
+                byMethod.put(bucket.substring(CashLedgerService.SALE_PREFIX.length()), total);
+            }
+        });
+        return byMethod;
     }
 }
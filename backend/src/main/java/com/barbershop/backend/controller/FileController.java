@@ -1,16 +1,29 @@
 package com.barbershop.backend.controller;
 
 import com.barbershop.backend.model.DBFile;
-import com.barbershop.backend.repository.DBFileRepository;
+import com.barbershop.backend.payload.response.FileMetadata;
+import com.barbershop.backend.service.FileContentService;
+import com.barbershop.backend.service.ImageVariantService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -19,14 +32,32 @@ import java.util.Optional;
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class FileController {
 
+    // Tomcat sends files from the kernel when these request attributes are set
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Ids are never reused for other content, so browsers may keep files for a year without asking
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    // Below this, setting up sendfile costs more than copying (Tomcat's own default)
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
     @Autowired
-    private DBFileRepository dbFileRepository;
+    private FileContentService fileContentService;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
 
     @PostMapping("/uploads")
     public ResponseEntity<?> uploadFile(@RequestParam("file") MultipartFile file) {
         try {
-            DBFile dbFile = new DBFile(file.getOriginalFilename(), file.getContentType(), file.getBytes());
-            dbFile = dbFileRepository.save(dbFile);
+            DBFile dbFile;
+            try (InputStream content = file.getInputStream()) {
+                dbFile = fileContentService.store(file.getOriginalFilename(), file.getContentType(), content);
+            }
+            imageVariantService.generateLater(dbFile);
 
             String fileDownloadUri = "/api/files/" + dbFile.getId();
 
@@ -40,19 +71,105 @@ public class FileController {
         }
     }
 
-    @GetMapping("/files/{id}")
-    public ResponseEntity<byte[]> getFile(@PathVariable String id) {
-        Optional<DBFile> dbFileOptional = dbFileRepository.findById(id);
+    /**
+     * Serves a file from the blob store, with sendfile when the server supports
+     * it and a channel transfer otherwise. Answers HEAD with the headers alone and
+     * a single byte Range with 206 Partial Content; several ranges get the whole file.
+     * Files are cacheable for good, and a conditional request that still matches
+     * gets 304 from the metadata alone. Images can be asked for resized with
+     * ?variant=thumb, card or full.
+     */
+    @RequestMapping(value = "/files/{id}", method = { RequestMethod.GET, RequestMethod.HEAD })
+    public ResponseEntity<StreamingResponseBody> getFile(@PathVariable String id,
+            @RequestParam(required = false) String variant, @RequestHeader HttpHeaders requestHeaders,
+            HttpMethod method, HttpServletRequest request) {
+        Optional<FileMetadata> metadata = fileContentService.metadata(id);
+        if (!metadata.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        Optional<FileMetadata> resized = variant != null
+                ? imageVariantService.find(metadata.get(), ImageVariantService.parse(variant))
+                : metadata;
+        FileMetadata file = resized.orElse(metadata.get());
+        long size = file.getFileSize();
+        // The content hash is the strong validator: an id never points at other bytes
+        String etag = "\"" + file.getContentHash() + "\"";
+        long lastModified = file.getCreatedAt() != null
+                ? file.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
 
-        if (dbFileOptional.isPresent()) {
-            DBFile dbFile = dbFileOptional.get();
+        HttpStatus status = HttpStatus.OK;
+        long offset = 0;
+        long length = size;
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setETag(etag);
+        if (lastModified >= 0) {
+            headers.setLastModified(lastModified);
+        }
+        // Until the variant is made the original stands in for it, and must not be kept as if it were it
+        headers.setCacheControl(resized.isPresent() ? IMMUTABLE : "no-cache");
+        if (notModified(requestHeaders, etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
 
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + dbFile.getFileName() + "\"")
-                    .header(HttpHeaders.CONTENT_TYPE, dbFile.getFileType())
-                    .body(dbFile.getData());
-        } else {
-            return ResponseEntity.notFound().build();
+        List<HttpRange> ranges;
+        try {
+            ranges = requestHeaders.getRange();
+        } catch (IllegalArgumentException e) {
+            // Malformed or too many ranges
+            ranges = null;
+        }
+        // A range of another version of the file is no use to the client; send it whole
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            ranges = Collections.emptyList();
+        }
+        if (ranges == null || ranges.size() == 1) {
+            long start = ranges != null ? ranges.get(0).getRangeStart(size) : size;
+            long end = ranges != null ? ranges.get(0).getRangeEnd(size) : -1;
+            if (start >= size || end < start) {
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).build();
+            }
+            status = HttpStatus.PARTIAL_CONTENT;
+            offset = start;
+            length = end - start + 1;
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getFileName() + "\"");
+        headers.set(HttpHeaders.CONTENT_TYPE, file.getFileType() != null
+                ? file.getFileType() : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        headers.setContentLength(length);
+        if (method == HttpMethod.HEAD) {
+            return ResponseEntity.status(status).headers(headers).build();
+        }
+
+        if (length >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            Optional<Path> path = fileContentService.localPath(file);
+            if (path.isPresent()) {
+                request.setAttribute(SENDFILE_FILENAME, path.get().toString());
+                request.setAttribute(SENDFILE_START, offset);
+                request.setAttribute(SENDFILE_END, offset + length);
+                return ResponseEntity.status(status).headers(headers).build();
+            }
+        }
+
+        long from = offset;
+        long count = length;
+        return ResponseEntity.status(status).headers(headers)
+                .body(out -> fileContentService.copy(file, from, count, out));
+    }
+
+    // If-None-Match wins over If-Modified-Since, as RFC 7232 asks
+    private static boolean notModified(HttpHeaders requestHeaders, String etag, long lastModified) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            return ifNoneMatch.stream()
+                    .anyMatch(tag -> tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag));
         }
+        long ifModifiedSince = requestHeaders.getIfModifiedSince();
+        // HTTP dates have whole seconds
+        return ifModifiedSince >= 0 && lastModified >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
     }
 }
@@ -1,10 +1,14 @@
 package com.barbershop.backend.controller;
 
+import com.barbershop.backend.exception.OutOfStockException;
 import com.barbershop.backend.model.Sale;
-import com.barbershop.backend.model.SaleItem;
+import com.barbershop.backend.model.User;
 import com.barbershop.backend.repository.SaleRepository;
+import com.barbershop.backend.service.IdempotencyService;
+import com.barbershop.backend.service.SaleService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
@@ -22,71 +26,48 @@ public class PosController {
     @Autowired
     private com.barbershop.backend.repository.UserRepository userRepository;
 
+    @Autowired
+    private SaleService saleService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     @PostMapping("/sales")
     @org.springframework.security.access.prepost.PreAuthorize("hasAuthority('ROLE_ADMIN') or hasAuthority('ROLE_BARBER')")
     @org.springframework.transaction.annotation.Transactional
-    public ResponseEntity<?> createSale(@RequestBody Sale sale) {
+    public ResponseEntity<?> createSale(@RequestBody Sale sale,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        // A retried request gets the original response without creating another sale
+        IdempotencyService.Claim claim = null;
+        if (idempotencyKey != null) {
+            claim = idempotencyService.claim("pos-sale", idempotencyKey);
+            if (claim.isReplay()) {
+                return claim.replay();
+            }
+        }
+
         System.out.println("DEBUG: Received Sale Payload: " + sale);
         if (sale.getItems() != null) {
             sale.getItems().forEach(i -> System.out.println(
                     "DEBUG: Item: " + i.getItemName() + " | Price: " + i.getPrice() + " | Qty: " + i.getQuantity()));
         }
         try {
-            // Get Current User
-            org.springframework.security.core.Authentication authentication = org.springframework.security.core.context.SecurityContextHolder
-                    .getContext().getAuthentication();
-
-            if (authentication != null && authentication.isAuthenticated()) {
-                String email = authentication.getName();
-                userRepository.findByEmail(email).ifPresent(sale::setCreatedBy);
+            String error = saleService.normalize(sale, currentUser());
+            if (error != null) {
+                return ResponseEntity.badRequest().body(Map.of("message", error));
             }
 
-            // Ensure date is set serverside if missing
-            if (sale.getDate() == null) {
-                sale.setDate(LocalDateTime.now());
+            Sale savedSale = saleService.create(sale);
+            if (claim != null) {
+                claim.succeeded(200, savedSale);
             }
-
-            double calculatedTotal = 0;
-
-            // Link items to sale (bidirectional) and validate
-            if (sale.getItems() != null && !sale.getItems().isEmpty()) {
-                for (SaleItem item : sale.getItems()) {
-                    item.setSale(sale);
-
-                    // Robust fallback for missing itemName
-                    if (item.getItemName() == null || item.getItemName().trim().isEmpty()) {
-                        if (item.getService() != null) {
-                            item.setItemName("Servicio");
-                        } else if (item.getProduct() != null) {
-                            item.setItemName("Producto");
-                        } else {
-                            item.setItemName("Ítem Varios");
-                        }
-                    }
-
-                    // Mandatory field validation for persistence robustness
-                    if (item.getPrice() == null)
-                        item.setPrice(0.0);
-                    if (item.getQuantity() == null)
-                        item.setQuantity(1);
-                    if (item.getSubtotal() == null) {
-                        item.setSubtotal(item.getPrice() * item.getQuantity());
-                    }
-
-                    calculatedTotal += item.getSubtotal();
-                }
-            } else {
-                return ResponseEntity.badRequest().body(Map.of("message", "La venta no tiene ítems."));
-            }
-
-            // Ensure total matches items
-            if (sale.getTotalAmount() == null || sale.getTotalAmount() == 0) {
-                sale.setTotalAmount(calculatedTotal);
-            }
-
-            Sale savedSale = saleRepository.save(sale);
             return ResponseEntity.ok(savedSale);
+        } catch (OutOfStockException e) {
+            // Rolled back and answered with 409 and the shortages
+            throw e;
         } catch (Exception e) {
+            // The sale and its ledger entry commit together or not at all
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             System.err.println("ERROR CREATING SALE: " + e.getMessage());
             e.printStackTrace();
             String errorMsg = e.getMessage();
@@ -100,10 +81,27 @@ public class PosController {
         }
     }
 
+    // Replays sales queued by a tablet while offline; each one is reported by its position.
+    // No Idempotency-Key: the sales commit on their own, and their clientRef is what makes a retry safe
+    @PostMapping("/sales/batch")
+    @org.springframework.security.access.prepost.PreAuthorize("hasAuthority('ROLE_ADMIN') or hasAuthority('ROLE_BARBER')")
+    public ResponseEntity<?> createSales(@RequestBody List<Sale> sales) {
+        return ResponseEntity.ok(saleService.createBatch(sales, currentUser()));
+    }
+
     @GetMapping("/sales/today")
     public ResponseEntity<List<Sale>> getTodaySales() {
         LocalDateTime startOfDay = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0);
         LocalDateTime endOfDay = LocalDateTime.now().withHour(23).withMinute(59).withSecond(59);
         return ResponseEntity.ok(saleRepository.findByDateBetweenOrderByDateDesc(startOfDay, endOfDay));
     }
+
+    private User currentUser() {
+        org.springframework.security.core.Authentication authentication = org.springframework.security.core.context.SecurityContextHolder
+                .getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return null;
+        }
+        return userRepository.findByEmail(authentication.getName()).orElse(null);
+    }
 }
@@ -1,13 +1,18 @@
 package com.barbershop.backend.controller;
 
 import com.barbershop.backend.model.Product;
+import com.barbershop.backend.payload.request.StockAdjustmentRequest;
+import com.barbershop.backend.payload.response.MessageResponse;
 import com.barbershop.backend.repository.ProductRepository;
+import com.barbershop.backend.service.CommissionReportService;
+import com.barbershop.backend.service.InventoryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -17,6 +22,9 @@ public class ProductController {
     @Autowired
     ProductRepository productRepository;
 
+    @Autowired
+    private InventoryService inventoryService;
+
     @GetMapping
     public List<Product> getAllProducts() {
         return productRepository.findAll();
@@ -32,6 +40,9 @@ public class ProductController {
     @PostMapping
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
     public Product createProduct(@RequestBody Product product) {
+        if (product.getCommissionRate() != null) {
+            CommissionReportService.validRate(product.getCommissionRate());
+        }
         return productRepository.save(product);
     }
 
@@ -43,13 +54,29 @@ public class ProductController {
                     product.setName(productDetails.getName());
                     product.setDescription(productDetails.getDescription());
                     product.setPrice(productDetails.getPrice());
-                    product.setStock(productDetails.getStock());
+                    // Stock is not set from the form, which may hold a count from before the latest sales
                     product.setImageUrl(productDetails.getImageUrl());
-                    return ResponseEntity.ok(productRepository.save(product));
+                    // Older clients send the object without a rate; keep the current one
+                    if (productDetails.getCommissionRate() != null) {
+                        product.setCommissionRate(CommissionReportService.validRate(productDetails.getCommissionRate()));
+                    }
+                    Product saved = productRepository.save(product);
+                    return ResponseEntity.ok(saved);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // Changes the stock by a difference, so units sold in the meantime are kept
+    @PostMapping("/{id}/stock")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<?> adjustStock(@PathVariable Long id, @RequestBody StockAdjustmentRequest request) {
+        if (request.getDelta() == null) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: 'delta' is required."));
+        }
+        int stock = inventoryService.adjust(id, request.getDelta());
+        return ResponseEntity.ok(Map.of("id", id, "stock", stock));
+    }
+
     @DeleteMapping("/{id}")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
     public ResponseEntity<?> deleteProduct(@PathVariable Long id) {
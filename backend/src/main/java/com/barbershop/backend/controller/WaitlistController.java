@@ -0,0 +1,94 @@
+package com.barbershop.backend.controller;
+
+import com.barbershop.backend.model.Appointment;
+import com.barbershop.backend.model.User;
+import com.barbershop.backend.model.WaitlistEntry;
+import com.barbershop.backend.payload.request.WaitlistRequest;
+import com.barbershop.backend.payload.response.MessageResponse;
+import com.barbershop.backend.repository.UserRepository;
+import com.barbershop.backend.repository.WaitlistEntryRepository;
+import com.barbershop.backend.security.UserDetailsImpl;
+import com.barbershop.backend.service.WaitlistService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/waitlist")
+@PreAuthorize("isAuthenticated()")
+public class WaitlistController {
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private WaitlistEntryRepository waitlistRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // Admins see the open waitlist, clients their own entries (including pending offers)
+    @GetMapping
+    public List<WaitlistEntry> getWaitlist() {
+        UserDetailsImpl userDetails = currentUser();
+        if (isAdmin(userDetails)) {
+            return waitlistRepository.findByStatusInOrderByDateAscCreatedAtAsc(
+                    List.of(WaitlistEntry.Status.WAITING, WaitlistEntry.Status.OFFERED));
+        }
+        return waitlistRepository.findByUserIdOrderByDateAscCreatedAtAsc(userDetails.getId());
+    }
+
+    @PostMapping
+    public ResponseEntity<?> joinWaitlist(@RequestBody WaitlistRequest request) {
+        UserDetailsImpl userDetails = currentUser();
+        User user = userRepository.findById(userDetails.getId())
+                .orElseThrow(() -> new RuntimeException("Error: User not found."));
+        return ResponseEntity.ok(waitlistService.join(request, user, isAdmin(userDetails)));
+    }
+
+    @PostMapping("/{id}/accept")
+    public ResponseEntity<?> acceptOffer(@PathVariable Long id) {
+        UserDetailsImpl userDetails = currentUser();
+        WaitlistEntry entry = findOwned(id, userDetails);
+        if (entry == null) {
+            return ResponseEntity.status(403)
+                    .body(new MessageResponse("Error: You are not authorized to accept this offer."));
+        }
+        Appointment appointment = waitlistService.accept(entry, userDetails.getUsername());
+        return ResponseEntity.ok(Map.of("message", "Appointment booked successfully!", "appointmentId",
+                appointment.getId()));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> leaveWaitlist(@PathVariable Long id) {
+        WaitlistEntry entry = findOwned(id, currentUser());
+        if (entry == null) {
+            return ResponseEntity.status(403)
+                    .body(new MessageResponse("Error: You are not authorized to remove this entry."));
+        }
+        waitlistService.leave(entry);
+        return ResponseEntity.ok(new MessageResponse("Removed from the waitlist."));
+    }
+
+    private WaitlistEntry findOwned(Long id, UserDetailsImpl userDetails) {
+        WaitlistEntry entry = waitlistRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Error: Waitlist entry not found."));
+        boolean isOwner = entry.getUser() != null && entry.getUser().getId().equals(userDetails.getId());
+        return isAdmin(userDetails) || isOwner ? entry : null;
+    }
+
+    private static UserDetailsImpl currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return (UserDetailsImpl) authentication.getPrincipal();
+    }
+
+    private static boolean isAdmin(UserDetailsImpl userDetails) {
+        return userDetails.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+    }
+}
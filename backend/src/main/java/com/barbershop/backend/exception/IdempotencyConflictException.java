@@ -0,0 +1,12 @@
+package com.barbershop.backend.exception;
+
+/**
+ * Thrown when a request arrives while another one with the same Idempotency-Key
+ * is still being processed. The client should retry later and get the replay.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,23 @@
+package com.barbershop.backend.exception;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thrown when a sale asks for more units than a product has left. Carries one
+ * entry per short product (productId, name, requested, available) so the POS can
+ * tell the barber what to fix.
+ */
+public class OutOfStockException extends RuntimeException {
+
+    private final List<Map<String, Object>> shortages;
+
+    public OutOfStockException(String message, List<Map<String, Object>> shortages) {
+        super(message);
+        this.shortages = shortages;
+    }
+
+    public List<Map<String, Object>> getShortages() {
+        return shortages;
+    }
+}
@@ -0,0 +1,23 @@
+package com.barbershop.backend.exception;
+
+import com.barbershop.backend.payload.response.AvailableSlotResponse;
+
+import java.util.List;
+
+/**
+ * Thrown when a booking loses the race for a slot. Carries nearby free windows so
+ * the client can offer them straight away.
+ */
+public class SlotUnavailableException extends RuntimeException {
+
+    private final List<AvailableSlotResponse> alternatives;
+
+    public SlotUnavailableException(String message, List<AvailableSlotResponse> alternatives) {
+        super(message);
+        this.alternatives = alternatives;
+    }
+
+    public List<AvailableSlotResponse> getAlternatives() {
+        return alternatives;
+    }
+}
@@ -0,0 +1,87 @@
+package com.barbershop.backend.migration;
+
+import com.barbershop.backend.service.BlobStore;
+import com.barbershop.backend.service.StoredBlob;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves the content of every uploaded file out of db_files and into the
+ * {@link BlobStore}, recording its content hash on the row.
+ *
+ * The data column is kept as it was: until every deployment has its blob
+ * directory on a persistent volume it is the only other copy of these files,
+ * and {@link com.barbershop.backend.service.BlobStoreCheck} restores blobs from
+ * it when they go missing. Dropping it is left to a later migration.
+ *
+ * Unlike the migrations in db/migration this one is a Spring bean (Spring Boot
+ * hands JavaMigration beans to Flyway), because it needs the configured blob
+ * store. Blobs are content addressed, so running it again after a failure just
+ * finds the blobs it already wrote.
+ */
+@Component
+public class V13__Files_to_blob_store extends BaseJavaMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(V13__Files_to_blob_store.class);
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE db_files ADD COLUMN content_hash VARCHAR(64)");
+        }
+
+        List<String> ids = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT id FROM db_files WHERE data IS NOT NULL")) {
+            while (rs.next()) {
+                ids.add(rs.getString(1));
+            }
+        }
+        // One row at a time, so only one file is in flight whatever the table holds
+        try (PreparedStatement select = connection.prepareStatement("SELECT data FROM db_files WHERE id = ?");
+                PreparedStatement update = connection.prepareStatement(
+                        "UPDATE db_files SET content_hash = ?, file_size = ? WHERE id = ?")) {
+            for (String id : ids) {
+                select.setString(1, id);
+                try (ResultSet rs = select.executeQuery()) {
+                    if (!rs.next()) {
+                        continue;
+                    }
+                    Blob data = rs.getBlob(1);
+                    StoredBlob blob;
+                    try (InputStream content = data.getBinaryStream()) {
+                        blob = blobStore.put(content);
+                    } finally {
+                        data.free();
+                    }
+                    update.setString(1, blob.getHash());
+                    update.setLong(2, blob.getSize());
+                    update.setString(3, id);
+                    update.executeUpdate();
+                }
+            }
+        }
+        logger.info("Moved {} files to the blob store", ids.size());
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE INDEX idx_db_files_content_hash ON db_files (content_hash)");
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.barbershop.backend.model;
 
 import javax.persistence.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -8,7 +9,8 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "appointments")
+@Table(name = "appointments", uniqueConstraints = @UniqueConstraint(name = "uk_appointments_barber_slot", columnNames = {
+        "barber_id", "slot_start" }))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -51,6 +53,22 @@ public class Appointment {
     private String createdBy; // User email or "SYSTEM" or "GUEST"
     private String creationSource; // e.g. "WEB", "MOBILE", "WALK_IN"
 
+    // Copy of startTime while the booking is active (null once cancelled), so the
+    // unique (barber_id, slot_start) constraint rejects double bookings across nodes
+    @JsonIgnore
+    @Column(name = "slot_start")
+    private LocalDateTime slotStart;
+
+    // Recurring series this occurrence was materialized from, if any
+    @Column(name = "series_id")
+    private Long seriesId;
+
+    @PrePersist
+    @PreUpdate
+    void syncSlotStart() {
+        slotStart = status == Status.CANCELLED ? null : startTime;
+    }
+
     public enum Status {
         BOOKED,
         COMPLETED,
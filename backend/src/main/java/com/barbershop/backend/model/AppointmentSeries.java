@@ -0,0 +1,112 @@
+package com.barbershop.backend.model;
+
+import javax.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Recurrence rule of a regular client (RRULE subset: FREQ, INTERVAL, UNTIL, COUNT).
+ * Occurrences are plain appointments carrying the series id.
+ */
+@Entity
+@Table(name = "appointment_series")
+@Data
+@NoArgsConstructor
+public class AppointmentSeries {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "user_id")
+    private User user;
+
+    private String guestName;
+    private String guestEmail;
+    private String guestPhone;
+
+    @ManyToOne
+    @JoinColumn(name = "barber_id", nullable = false)
+    private Barber barber;
+
+    @ManyToOne
+    @JoinColumn(name = "appointment_type_id")
+    private AppointmentType appointmentType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Frequency frequency;
+
+    @Column(name = "repeat_interval", nullable = false)
+    private Integer interval;
+
+    @Column(nullable = false)
+    private LocalDate startDate;
+
+    @Column(name = "time_of_day", nullable = false)
+    private LocalTime timeOfDay;
+
+    @Column(nullable = false)
+    private Integer durationMinutes;
+
+    @Column(name = "until_date")
+    private LocalDate until;
+
+    @Column(name = "occurrence_count")
+    private Integer count;
+
+    private String notes;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+
+    // Last day whose occurrences already exist as appointments
+    private LocalDate materializedUntil;
+
+    private LocalDateTime createdAt;
+    private String createdBy;
+
+    public enum Frequency {
+        DAILY,
+        WEEKLY,
+        MONTHLY
+    }
+
+    public enum Status {
+        ACTIVE,
+        CANCELLED
+    }
+
+    /**
+     * Date of the n-th occurrence (0 based), ignoring UNTIL/COUNT.
+     */
+    public LocalDate occurrenceDate(int n) {
+        long steps = (long) n * interval;
+        switch (frequency) {
+            case DAILY:
+                return startDate.plusDays(steps);
+            case WEEKLY:
+                return startDate.plusWeeks(steps);
+            default:
+                return startDate.plusMonths(steps);
+        }
+    }
+
+    public String getRrule() {
+        StringBuilder rule = new StringBuilder("FREQ=").append(frequency).append(";INTERVAL=").append(interval);
+        if (until != null) {
+            rule.append(";UNTIL=").append(until.format(DateTimeFormatter.BASIC_ISO_DATE));
+        }
+        if (count != null) {
+            rule.append(";COUNT=").append(count);
+        }
+        return rule.toString();
+    }
+}
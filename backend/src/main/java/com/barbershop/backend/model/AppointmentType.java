@@ -25,4 +25,7 @@ public class AppointmentType {
     private String color;
 
     private String description;
+
+    // Fraction of the subtotal paid to the barber; null uses the shop default
+    private Double commissionRate;
 }
@@ -0,0 +1,58 @@
+package com.barbershop.backend.model;
+
+import javax.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only view of an appointment moved to cold storage by the ArchiveService.
+ * Rows are written with plain SQL, never through this entity.
+ */
+@Entity
+@Immutable
+@Table(name = "appointments_archive")
+@Data
+@NoArgsConstructor
+public class ArchivedAppointment {
+
+    @Id
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id")
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "barber_id")
+    private Barber barber;
+
+    private LocalDateTime startTime;
+
+    @Column(nullable = false)
+    private LocalDateTime endTime;
+
+    @Enumerated(EnumType.STRING)
+    private Appointment.Status status;
+
+    private String guestName;
+    private String guestEmail;
+    private String guestPhone;
+    private String notes;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "appointment_type_id")
+    private AppointmentType appointmentType;
+
+    private LocalDateTime createdAt;
+    private String createdBy;
+    private String creationSource;
+
+    @Column(name = "series_id")
+    private Long seriesId;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+}
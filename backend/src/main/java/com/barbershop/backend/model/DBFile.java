@@ -3,6 +3,8 @@ package com.barbershop.backend.model;
 import javax.persistence.*;
 import org.hibernate.annotations.GenericGenerator;
 
+import java.time.LocalDateTime;
+
 @Entity
 @Table(name = "db_files")
 public class DBFile {
@@ -16,16 +18,21 @@ public class DBFile {
 
     private String fileType;
 
-    @Lob
-    private byte[] data;
+    // SHA-256 of the content, which lives in the BlobStore under this key
+    private String contentHash;
+
+    private Long fileSize;
+
+    private LocalDateTime createdAt = LocalDateTime.now();
 
     public DBFile() {
     }
 
-    public DBFile(String fileName, String fileType, byte[] data) {
+    public DBFile(String fileName, String fileType, String contentHash, Long fileSize) {
         this.fileName = fileName;
         this.fileType = fileType;
-        this.data = data;
+        this.contentHash = contentHash;
+        this.fileSize = fileSize;
     }
 
     public String getId() {
@@ -52,11 +59,27 @@ public class DBFile {
         this.fileType = fileType;
     }
 
-    public byte[] getData() {
-        return data;
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
     }
 
-    public void setData(byte[] data) {
-        this.data = data;
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
     }
 }
@@ -21,6 +21,9 @@ public class Product {
 
     private String imageUrl;
 
+    // Fraction of the subtotal paid to the barber; null uses the shop default
+    private Double commissionRate;
+
     public Product() {
     }
 
@@ -71,4 +74,12 @@ public class Product {
     public void setImageUrl(String imageUrl) {
         this.imageUrl = imageUrl;
     }
+
+    public Double getCommissionRate() {
+        return commissionRate;
+    }
+
+    public void setCommissionRate(Double commissionRate) {
+        this.commissionRate = commissionRate;
+    }
 }
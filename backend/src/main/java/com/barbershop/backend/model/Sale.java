@@ -10,12 +10,22 @@ import java.util.List;
 public class Sale {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence so inserts can be batched (see V9)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sales_seq")
+    @SequenceGenerator(name = "sales_seq", sequenceName = "sales_seq", allocationSize = 50)
     private Long id;
 
+    // Stamped by the server when the sale arrives
     @Column(nullable = false)
     private LocalDateTime date;
 
+    // Time the POS recorded the sale; earlier than date for sales queued offline
+    private LocalDateTime clientDate;
+
+    // Given by the POS to a sale recorded offline; unique, so a replayed batch cannot insert it twice
+    @Column(length = 64)
+    private String clientRef;
+
     @Column(nullable = false)
     private Double totalAmount;
 
@@ -73,6 +83,22 @@ public class Sale {
         this.date = date;
     }
 
+    public LocalDateTime getClientDate() {
+        return clientDate;
+    }
+
+    public void setClientDate(LocalDateTime clientDate) {
+        this.clientDate = clientDate;
+    }
+
+    public String getClientRef() {
+        return clientRef;
+    }
+
+    public void setClientRef(String clientRef) {
+        this.clientRef = clientRef;
+    }
+
     public Double getTotalAmount() {
         return totalAmount;
     }
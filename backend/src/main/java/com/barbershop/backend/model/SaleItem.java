@@ -8,7 +8,9 @@ import javax.persistence.*;
 public class SaleItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence so inserts can be batched (see V9)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sale_items_seq")
+    @SequenceGenerator(name = "sale_items_seq", sequenceName = "sale_items_seq", allocationSize = 50)
     private Long id;
 
     @JsonIgnore
@@ -44,6 +46,10 @@ public class SaleItem {
     @JoinColumn(name = "barber_id")
     private Barber barber;
 
+    // Commission rate in force when the item was sold, so later rate edits leave past payroll alone
+    @Column(nullable = false)
+    private Double commissionRate;
+
     public SaleItem() {
     }
 
@@ -120,4 +126,12 @@ public class SaleItem {
     public void setBarber(Barber barber) {
         this.barber = barber;
     }
+
+    public Double getCommissionRate() {
+        return commissionRate;
+    }
+
+    public void setCommissionRate(Double commissionRate) {
+        this.commissionRate = commissionRate;
+    }
 }
@@ -0,0 +1,78 @@
+package com.barbershop.backend.model;
+
+import javax.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+@Entity
+@Table(name = "waitlist_entries")
+@Data
+@NoArgsConstructor
+public class WaitlistEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "user_id")
+    private User user;
+
+    private String guestName;
+    private String guestEmail;
+    private String guestPhone;
+
+    // Null means any barber
+    @ManyToOne
+    @JoinColumn(name = "barber_id")
+    private Barber barber;
+
+    @ManyToOne
+    @JoinColumn(name = "appointment_type_id")
+    private AppointmentType appointmentType;
+
+    @Column(nullable = false)
+    private Integer durationMinutes;
+
+    @Column(nullable = false)
+    private LocalDate date;
+
+    // Acceptable start/end of the appointment on that day
+    @Column(nullable = false)
+    private LocalTime windowStart;
+
+    @Column(nullable = false)
+    private LocalTime windowEnd;
+
+    // Book straight away instead of offering the freed slot
+    @Column(nullable = false)
+    private boolean autoBook;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+
+    // Pending offer, valid until offerExpiresAt
+    private Long offeredBarberId;
+    private LocalDateTime offeredStart;
+    private LocalDateTime offerExpiresAt;
+
+    private Long appointmentId;
+
+    private String notes;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    public enum Status {
+        WAITING,
+        OFFERED,
+        BOOKED,
+        EXPIRED,
+        CANCELLED
+    }
+}
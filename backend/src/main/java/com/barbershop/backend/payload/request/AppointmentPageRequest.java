@@ -0,0 +1,16 @@
+package com.barbershop.backend.payload.request;
+
+import lombok.Data;
+
+/**
+ * Keyset paging parameters of the appointment list endpoints, all optional.
+ * from/to accept an ISO date (to is then inclusive) or date-time (to exclusive).
+ */
+@Data
+public class AppointmentPageRequest {
+    private String from;
+    private String to;
+    private String cursor; // opaque, taken from the X-Next-Cursor header of the previous page
+    private Integer size;
+    private Boolean includeHistory; // also read appointments moved to the archive (reports)
+}
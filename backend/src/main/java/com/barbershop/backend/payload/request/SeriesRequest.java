@@ -0,0 +1,33 @@
+package com.barbershop.backend.payload.request;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Recurring booking. The rule is either given as fields or as an RRULE string
+ * ("FREQ=WEEKLY;INTERVAL=2;COUNT=10"); explicit fields win.
+ */
+@Data
+public class SeriesRequest {
+    private Long userId; // nullable for guest series
+    private Long barberId;
+    private Long appointmentTypeId;
+
+    private String guestName;
+    private String guestEmail;
+    private String guestPhone;
+
+    private LocalDate startDate;
+    private LocalTime startTime;
+    private Integer durationMinutes; // defaults to the service duration
+
+    private String rrule;
+    private String frequency; // DAILY, WEEKLY, MONTHLY
+    private Integer interval;
+    private LocalDate until;
+    private Integer count;
+
+    private String notes;
+}
@@ -0,0 +1,11 @@
+package com.barbershop.backend.payload.request;
+
+import lombok.Data;
+
+/**
+ * Units to add to a product's stock (negative to remove).
+ */
+@Data
+public class StockAdjustmentRequest {
+    private Integer delta;
+}
@@ -0,0 +1,23 @@
+package com.barbershop.backend.payload.request;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+@Data
+public class WaitlistRequest {
+    private Long userId; // admin only; clients always join as themselves
+    private Long barberId; // null = any barber
+    private Long appointmentTypeId;
+    private LocalDate date;
+    private LocalTime windowStart;
+    private LocalTime windowEnd;
+    private Boolean autoBook;
+
+    private String guestName;
+    private String guestEmail;
+    private String guestPhone;
+
+    private String notes;
+}
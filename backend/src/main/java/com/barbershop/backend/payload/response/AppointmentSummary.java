@@ -0,0 +1,115 @@
+package com.barbershop.backend.payload.response;
+
+import com.barbershop.backend.model.Appointment;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Calendar/list view of an appointment, filled by a single JPQL constructor query.
+ * Keeps the JSON shape of the entity (nested barber, user, appointmentType) but
+ * only with the columns the views read.
+ */
+@Data
+@NoArgsConstructor
+public class AppointmentSummary {
+    private Long id;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private Appointment.Status status;
+    private String guestName;
+    private String guestEmail;
+    private String guestPhone;
+    private String notes;
+    private LocalDateTime createdAt;
+    private String createdBy;
+    private String creationSource;
+    private String clientName;
+    private String clientEmail;
+    private ClientRef user;
+    private BarberRef barber;
+    private TypeRef appointmentType;
+
+    public AppointmentSummary(Long id, LocalDateTime startTime, LocalDateTime endTime, Appointment.Status status,
+            String guestName, String guestEmail, String guestPhone, String notes, LocalDateTime createdAt,
+            String createdBy, String creationSource,
+            Long userId, String userName, String userEmail, String userPhone,
+            Long barberId, String barberName, String barberColor, String barberPhotoUrl,
+            Long typeId, String typeName, String typeColor, Integer typeDurationMinutes, Double typePrice) {
+        this.id = id;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.status = status;
+        this.guestName = guestName;
+        this.guestEmail = guestEmail;
+        this.guestPhone = guestPhone;
+        this.notes = notes;
+        this.createdAt = createdAt;
+        this.createdBy = createdBy;
+        this.creationSource = creationSource;
+        if (userId != null) {
+            this.user = new ClientRef(userId, userName, userEmail, userPhone);
+        }
+        if (barberId != null) {
+            this.barber = new BarberRef(barberId, barberName, barberColor, barberPhotoUrl);
+        }
+        if (typeId != null) {
+            this.appointmentType = new TypeRef(typeId, typeName, typeColor, typeDurationMinutes, typePrice);
+        }
+        // Same fallbacks as Appointment.getClientName()/getClientEmail()
+        this.clientName = user != null ? userName : guestName;
+        this.clientEmail = user != null ? userEmail : guestEmail;
+    }
+
+    public static AppointmentSummary from(Appointment a) {
+        return new AppointmentSummary(a.getId(), a.getStartTime(), a.getEndTime(), a.getStatus(),
+                a.getGuestName(), a.getGuestEmail(), a.getGuestPhone(), a.getNotes(), a.getCreatedAt(),
+                a.getCreatedBy(), a.getCreationSource(),
+                a.getUser() != null ? a.getUser().getId() : null,
+                a.getUser() != null ? a.getUser().getName() : null,
+                a.getUser() != null ? a.getUser().getEmail() : null,
+                a.getUser() != null ? a.getUser().getPhone() : null,
+                a.getBarber() != null ? a.getBarber().getId() : null,
+                a.getBarber() != null ? a.getBarber().getName() : null,
+                a.getBarber() != null ? a.getBarber().getColor() : null,
+                a.getBarber() != null ? a.getBarber().getPhotoUrl() : null,
+                a.getAppointmentType() != null ? a.getAppointmentType().getId() : null,
+                a.getAppointmentType() != null ? a.getAppointmentType().getName() : null,
+                a.getAppointmentType() != null ? a.getAppointmentType().getColor() : null,
+                a.getAppointmentType() != null ? a.getAppointmentType().getDurationMinutes() : null,
+                a.getAppointmentType() != null ? a.getAppointmentType().getPrice() : null);
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ClientRef {
+        private Long id;
+        private String name;
+        private String email;
+        private String phone;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class BarberRef {
+        private Long id;
+        private String name;
+        private String color;
+        private String photoUrl;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class TypeRef {
+        private Long id;
+        private String name;
+        private String color;
+        private Integer durationMinutes;
+        private Double price;
+    }
+}
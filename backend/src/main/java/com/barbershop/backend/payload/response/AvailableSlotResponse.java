@@ -0,0 +1,17 @@
+package com.barbershop.backend.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AvailableSlotResponse {
+    private Long barberId;
+    private String barberName;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+}
@@ -0,0 +1,16 @@
+package com.barbershop.backend.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Item subtotals attributed to a barber; barberId is null for items without one
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BarberSalesTotal {
+    private Long barberId;
+    private String barberName;
+    private Double total;
+    private Long count;
+}
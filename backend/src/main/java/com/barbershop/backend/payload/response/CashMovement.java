@@ -0,0 +1,56 @@
+package com.barbershop.backend.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row of the cash register history, filled by JPQL constructor queries over
+ * sales and withdrawals. Keeps the JSON shape the register view already reads.
+ */
+@Data
+@NoArgsConstructor
+public class CashMovement {
+    public static final String SALE = "SALE";
+    public static final String WITHDRAWAL = "WITHDRAWAL";
+
+    private String type;
+    private Long id;
+    private Double amount;
+    private LocalDateTime date;
+    private String description;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String paymentMethod; // Only for sales
+    private String user;
+
+    // Client label of a sale, appended to the description once its items are known
+    @JsonIgnore
+    private String client;
+
+    // Sale row; the description is completed with the item summary afterwards
+    public CashMovement(Long id, Double amount, LocalDateTime date, String paymentMethod, String clientName,
+            String guestName, String createdBy) {
+        this.type = SALE;
+        this.id = id;
+        this.amount = amount;
+        this.date = date;
+        this.paymentMethod = paymentMethod;
+        this.client = clientName != null ? clientName
+                : (guestName != null && !guestName.isEmpty() ? guestName : null);
+        this.user = createdBy != null ? createdBy : "Sistema";
+        this.description = "Venta #" + id + ": ";
+    }
+
+    // Withdrawal row, negative for display
+    public CashMovement(Long id, Double amount, LocalDateTime date, String description, String performedBy) {
+        this.type = WITHDRAWAL;
+        this.id = id;
+        this.amount = -amount;
+        this.date = date;
+        this.description = description;
+        this.user = performedBy != null ? performedBy : "Sistema";
+    }
+}
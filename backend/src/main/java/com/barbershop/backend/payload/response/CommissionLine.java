@@ -0,0 +1,20 @@
+package com.barbershop.backend.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Sales credited to one barber over a period and the commission they earned
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CommissionLine {
+    private Long barberId;
+    private String barberName;
+    private Double totalSales;
+    private Double serviceSales;
+    private Double productSales;
+    private Long itemCount;
+    private Long saleCount;
+    private Double commission;
+}
@@ -0,0 +1,20 @@
+package com.barbershop.backend.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CommissionReport {
+    private LocalDate from;
+    private LocalDate to;
+    private boolean closed; // Ends before the last cash cut; served from cache
+    private Double totalSales;
+    private Double totalCommission;
+    private List<CommissionLine> barbers;
+}
@@ -0,0 +1,17 @@
+package com.barbershop.backend.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DailySalesTotal {
+    private LocalDate day;
+    private String paymentMethod;
+    private Double total;
+    private Long count;
+}
@@ -0,0 +1,20 @@
+package com.barbershop.backend.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Everything about a stored file except its content
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FileMetadata {
+    private String id;
+    private String fileName;
+    private String fileType;
+    private String contentHash;
+    private Long fileSize;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,15 @@
+package com.barbershop.backend.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class KeysetPage<T> {
+    private List<T> items;
+    private String nextCursor; // null on the last page
+}
@@ -0,0 +1,15 @@
+package com.barbershop.backend.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// SUM/COUNT of cash movements for one key (payment method, or WITHDRAWAL)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovementTotal {
+    private String key;
+    private Double total;
+    private Long count;
+}
@@ -0,0 +1,22 @@
+package com.barbershop.backend.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// One row of a revenue report; day is absent when the range is summed per key, key/label for daily totals
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RevenueRow {
+    private LocalDate day;
+    private String key;
+    private String label;
+    private Double total;
+    private Long units;
+    private Long sales;
+}
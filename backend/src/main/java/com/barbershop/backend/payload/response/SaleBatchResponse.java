@@ -0,0 +1,28 @@
+package com.barbershop.backend.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Outcome of POST /api/pos/sales/batch, one result per sale in request order
+@Data
+@NoArgsConstructor
+public class SaleBatchResponse {
+    private int received;
+    private int created;
+    private int failed;
+    private List<Result> results = new ArrayList<>();
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Result {
+        private int index;
+        private boolean success;
+        private Long saleId;
+        private String message;
+    }
+}
@@ -0,0 +1,15 @@
+package com.barbershop.backend.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Item name and credited barber of a sale line, for history descriptions
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SaleItemLabel {
+    private Long saleId;
+    private String itemName;
+    private String barberName;
+}
@@ -1,7 +1,12 @@
 package com.barbershop.backend.repository;
 
 import com.barbershop.backend.model.Appointment;
+import com.barbershop.backend.payload.response.AppointmentSummary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -9,6 +14,24 @@ import java.util.List;
 
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
+
+    // Flat projection for list views: one query with outer joins instead of an entity graph per row
+    String SUMMARY_COLUMNS = "SELECT new com.barbershop.backend.payload.response.AppointmentSummary("
+            + "a.id, a.startTime, a.endTime, a.status, a.guestName, a.guestEmail, a.guestPhone, a.notes, "
+            + "a.createdAt, a.createdBy, a.creationSource, "
+            + "u.id, u.name, u.email, u.phone, "
+            + "b.id, b.name, b.color, b.photoUrl, "
+            + "t.id, t.name, t.color, t.durationMinutes, t.price) ";
+
+    String SUMMARY_JOINS = "LEFT JOIN a.user u LEFT JOIN a.barber b LEFT JOIN a.appointmentType t ";
+
+    String SUMMARY_SELECT = SUMMARY_COLUMNS + "FROM Appointment a " + SUMMARY_JOINS;
+
+    // Rows strictly after the (afterStart, afterId) keyset cursor
+    String KEYSET = "a.startTime >= :from AND a.startTime < :to "
+            + "AND (a.startTime > :afterStart OR (a.startTime = :afterStart AND a.id > :afterId)) "
+            + "ORDER BY a.startTime, a.id";
+
     List<Appointment> findByUserId(Long userId);
 
     List<Appointment> findByBarberId(Long barberId);
@@ -16,4 +39,81 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
     List<Appointment> findByStartTimeBetween(LocalDateTime start, LocalDateTime end);
 
     List<Appointment> findByBarberIdAndStartTimeBetween(Long barberId, LocalDateTime start, LocalDateTime end);
+
+    // Only what the availability index needs, instead of entities with their eager associations
+    interface Interval {
+        Long getId();
+
+        Long getBarberId();
+
+        LocalDateTime getStartTime();
+
+        LocalDateTime getEndTime();
+    }
+
+    String INTERVAL_SELECT = "SELECT a.id AS id, a.barber.id AS barberId, a.startTime AS startTime, "
+            + "a.endTime AS endTime FROM Appointment a WHERE a.startTime BETWEEN :start AND :end "
+            + "AND (a.status IS NULL OR a.status <> com.barbershop.backend.model.Appointment$Status.CANCELLED) ";
+
+    @Query(INTERVAL_SELECT)
+    List<Interval> findActiveIntervals(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query(INTERVAL_SELECT + "AND a.barber.id = :barberId")
+    List<Interval> findActiveIntervalsByBarber(@Param("barberId") Long barberId,
+            @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // Active bookings of the barber overlapping [start, end)
+    @Query("SELECT a FROM Appointment a WHERE a.barber.id = :barberId AND a.startTime < :end AND a.endTime > :start "
+            + "AND (a.status IS NULL OR a.status <> com.barbershop.backend.model.Appointment$Status.CANCELLED) "
+            + "ORDER BY a.startTime")
+    List<Appointment> findActiveOverlapping(@Param("barberId") Long barberId, @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    @Query(SUMMARY_SELECT + "WHERE a.startTime BETWEEN :start AND :end ORDER BY a.startTime, a.id")
+    List<AppointmentSummary> findSummariesByStartTimeBetween(@Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    @Query(SUMMARY_SELECT + "WHERE " + KEYSET)
+    List<AppointmentSummary> findPage(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+            @Param("afterStart") LocalDateTime afterStart, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE a.barber.id = :barberId AND " + KEYSET)
+    List<AppointmentSummary> findPageByBarber(@Param("barberId") Long barberId, @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to, @Param("afterStart") LocalDateTime afterStart,
+            @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE a.user.id = :userId AND " + KEYSET)
+    List<AppointmentSummary> findPageByUser(@Param("userId") Long userId, @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to, @Param("afterStart") LocalDateTime afterStart,
+            @Param("afterId") Long afterId, Pageable pageable);
+
+    // Recurring series: occurrences are edited and cancelled with one statement each
+
+    List<Appointment> findBySeriesIdAndStartTimeBetween(Long seriesId, LocalDateTime start, LocalDateTime end);
+
+    List<Appointment> findBySeriesIdAndStatusAndStartTimeGreaterThanEqual(Long seriesId, Appointment.Status status,
+            LocalDateTime from);
+
+    @Query(SUMMARY_SELECT + "WHERE a.seriesId = :seriesId ORDER BY a.startTime, a.id")
+    List<AppointmentSummary> findSummariesBySeriesId(@Param("seriesId") Long seriesId);
+
+    @Modifying
+    @Query("UPDATE Appointment a SET a.notes = :notes, a.guestName = :guestName, a.guestEmail = :guestEmail, "
+            + "a.guestPhone = :guestPhone WHERE a.seriesId = :seriesId "
+            + "AND a.status = com.barbershop.backend.model.Appointment$Status.BOOKED AND a.startTime >= :from")
+    int updateSeriesDetails(@Param("seriesId") Long seriesId, @Param("from") LocalDateTime from,
+            @Param("notes") String notes, @Param("guestName") String guestName,
+            @Param("guestEmail") String guestEmail, @Param("guestPhone") String guestPhone);
+
+    // Bulk updates skip @PreUpdate, so the slot key is released explicitly
+    @Modifying
+    @Query("UPDATE Appointment a SET a.status = com.barbershop.backend.model.Appointment$Status.CANCELLED, "
+            + "a.slotStart = NULL WHERE a.seriesId = :seriesId "
+            + "AND a.status = com.barbershop.backend.model.Appointment$Status.BOOKED AND a.startTime >= :from")
+    int cancelSeriesFrom(@Param("seriesId") Long seriesId, @Param("from") LocalDateTime from);
+
+    @Modifying
+    @Query("DELETE FROM Appointment a WHERE a.seriesId = :seriesId "
+            + "AND a.status = com.barbershop.backend.model.Appointment$Status.BOOKED AND a.startTime >= :from")
+    int deleteSeriesFrom(@Param("seriesId") Long seriesId, @Param("from") LocalDateTime from);
 }
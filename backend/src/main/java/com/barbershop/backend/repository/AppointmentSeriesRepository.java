@@ -0,0 +1,12 @@
+package com.barbershop.backend.repository;
+
+import com.barbershop.backend.model.AppointmentSeries;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface AppointmentSeriesRepository extends JpaRepository<AppointmentSeries, Long> {
+    List<AppointmentSeries> findByStatus(AppointmentSeries.Status status);
+}
@@ -0,0 +1,34 @@
+package com.barbershop.backend.repository;
+
+import com.barbershop.backend.model.ArchivedAppointment;
+import com.barbershop.backend.payload.response.AppointmentSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Same projection and keyset as AppointmentRepository, over the archive table
+@Repository
+public interface ArchivedAppointmentRepository extends JpaRepository<ArchivedAppointment, Long> {
+
+    String SUMMARY_SELECT = AppointmentRepository.SUMMARY_COLUMNS + "FROM ArchivedAppointment a "
+            + AppointmentRepository.SUMMARY_JOINS;
+
+    @Query(SUMMARY_SELECT + "WHERE " + AppointmentRepository.KEYSET)
+    List<AppointmentSummary> findPage(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+            @Param("afterStart") LocalDateTime afterStart, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE a.barber.id = :barberId AND " + AppointmentRepository.KEYSET)
+    List<AppointmentSummary> findPageByBarber(@Param("barberId") Long barberId, @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to, @Param("afterStart") LocalDateTime afterStart,
+            @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE a.user.id = :userId AND " + AppointmentRepository.KEYSET)
+    List<AppointmentSummary> findPageByUser(@Param("userId") Long userId, @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to, @Param("afterStart") LocalDateTime afterStart,
+            @Param("afterId") Long afterId, Pageable pageable);
+}
@@ -1,10 +1,34 @@
 package com.barbershop.backend.repository;
 
 import com.barbershop.backend.model.CashWithdrawal;
+import com.barbershop.backend.payload.response.CashMovement;
+import com.barbershop.backend.payload.response.MovementTotal;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import java.util.List;
 import java.time.LocalDateTime;
 
 public interface CashWithdrawalRepository extends JpaRepository<CashWithdrawal, Long> {
-    List<CashWithdrawal> findByTimestampAfter(LocalDateTime timestamp);
+    // Cash history cursor: withdrawals after the cut, newest first, strictly before (beforeDate, beforeId)
+    @Query("SELECT new com.barbershop.backend.payload.response.CashMovement("
+            + "w.id, w.amount, w.timestamp, w.description, u.name) "
+            + "FROM CashWithdrawal w LEFT JOIN w.performedBy u "
+            + "WHERE w.timestamp > :since "
+            + "AND (w.timestamp < :beforeDate OR (w.timestamp = :beforeDate AND w.id < :beforeId)) "
+            + "ORDER BY w.timestamp DESC, w.id DESC")
+    List<CashMovement> findHistoryChunk(@Param("since") LocalDateTime since,
+            @Param("beforeDate") LocalDateTime beforeDate, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query("SELECT new com.barbershop.backend.payload.response.MovementTotal("
+            + "'WITHDRAWAL', COALESCE(SUM(w.amount), 0.0), COUNT(w)) "
+            + "FROM CashWithdrawal w WHERE w.timestamp > :start")
+    MovementTotal sumSince(@Param("start") LocalDateTime start);
+
+    @Query("SELECT new com.barbershop.backend.payload.response.MovementTotal("
+            + "'WITHDRAWAL', COALESCE(SUM(w.amount), 0.0), COUNT(w)) "
+            + "FROM CashWithdrawal w WHERE w.timestamp >= :start AND w.timestamp < :end")
+    MovementTotal sumBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 }
@@ -1,9 +1,23 @@
 package com.barbershop.backend.repository;
 
 import com.barbershop.backend.model.DBFile;
+import com.barbershop.backend.payload.response.FileMetadata;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
 public interface DBFileRepository extends JpaRepository<DBFile, String> {
+
+    // Enough to answer a conditional GET or HEAD; the content stays in the BlobStore
+    @Query("SELECT new com.barbershop.backend.payload.response.FileMetadata(f.id, f.fileName, f.fileType, "
+            + "f.contentHash, f.fileSize, f.createdAt) FROM DBFile f WHERE f.id = :id")
+    Optional<FileMetadata> findMetadataById(@Param("id") String id);
+
+    // An earlier upload of the same bytes under the same name and type
+    Optional<DBFile> findFirstByContentHashAndFileNameAndFileType(String contentHash, String fileName,
+            String fileType);
 }
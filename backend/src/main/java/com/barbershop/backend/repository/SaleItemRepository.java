@@ -1,13 +1,22 @@
 package com.barbershop.backend.repository;
 
 import com.barbershop.backend.model.SaleItem;
+import com.barbershop.backend.payload.response.SaleItemLabel;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface SaleItemRepository extends JpaRepository<SaleItem, Long> {
     List<SaleItem> findByBarber_IdAndSale_DateBetween(Long barberId, LocalDateTime start, LocalDateTime end);
+
+    // Item summaries of a chunk of sales in one query, barber joined in
+    @Query("SELECT new com.barbershop.backend.payload.response.SaleItemLabel(i.sale.id, i.itemName, b.name) "
+            + "FROM SaleItem i LEFT JOIN i.barber b WHERE i.sale.id IN :saleIds ORDER BY i.sale.id, i.id")
+    List<SaleItemLabel> findLabelsBySaleIds(@Param("saleIds") Collection<Long> saleIds);
 }
@@ -1,10 +1,16 @@
 package com.barbershop.backend.repository;
 
 import com.barbershop.backend.model.Sale;
+import com.barbershop.backend.payload.response.CashMovement;
+import com.barbershop.backend.payload.response.MovementTotal;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -13,5 +19,23 @@ public interface SaleRepository extends JpaRepository<Sale, Long> {
 
     List<Sale> findByClient_IdOrderByDateDesc(Long clientId);
 
-    List<Sale> findByDateAfter(LocalDateTime date);
+    // {clientRef, id} of the sales already recorded under these POS references
+    @Query("SELECT s.clientRef, s.id FROM Sale s WHERE s.clientRef IN :refs")
+    List<Object[]> findIdsByClientRefIn(@Param("refs") Collection<String> refs);
+
+    // Cash history cursor: sales after the cut, newest first, strictly before (beforeDate, beforeId)
+    @Query("SELECT new com.barbershop.backend.payload.response.CashMovement("
+            + "s.id, s.totalAmount, s.date, s.paymentMethod, c.name, s.guestName, cb.name) "
+            + "FROM Sale s LEFT JOIN s.client c LEFT JOIN s.createdBy cb "
+            + "WHERE s.date > :since "
+            + "AND (s.date < :beforeDate OR (s.date = :beforeDate AND s.id < :beforeId)) "
+            + "ORDER BY s.date DESC, s.id DESC")
+    List<CashMovement> findHistoryChunk(@Param("since") LocalDateTime since,
+            @Param("beforeDate") LocalDateTime beforeDate, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    // Aggregates are computed by the database; only one small row per group is returned
+    @Query("SELECT new com.barbershop.backend.payload.response.MovementTotal("
+            + "UPPER(TRIM(s.paymentMethod)), SUM(s.totalAmount), COUNT(s)) "
+            + "FROM Sale s WHERE s.date > :start GROUP BY UPPER(TRIM(s.paymentMethod))")
+    List<MovementTotal> sumByPaymentMethodSince(@Param("start") LocalDateTime start);
 }
@@ -0,0 +1,61 @@
+package com.barbershop.backend.repository;
+
+import com.barbershop.backend.model.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, Long> {
+    List<WaitlistEntry> findByStatusAndDateGreaterThanEqual(WaitlistEntry.Status status, LocalDate date);
+
+    List<WaitlistEntry> findByStatusInOrderByDateAscCreatedAtAsc(List<WaitlistEntry.Status> statuses);
+
+    List<WaitlistEntry> findByUserIdOrderByDateAscCreatedAtAsc(Long userId);
+
+    List<WaitlistEntry> findByStatusAndOfferExpiresAtBefore(WaitlistEntry.Status status, LocalDateTime time);
+
+    // Status changes only apply while the entry still has the expected status, so a stale
+    // copy can never overwrite a newer state such as CANCELLED
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE WaitlistEntry e SET e.status = :to WHERE e.id = :id AND e.status IN :from")
+    int changeStatus(@Param("id") Long id, @Param("from") Collection<WaitlistEntry.Status> from,
+            @Param("to") WaitlistEntry.Status to);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE WaitlistEntry e SET e.status = com.barbershop.backend.model.WaitlistEntry$Status.EXPIRED "
+            + "WHERE e.status = com.barbershop.backend.model.WaitlistEntry$Status.WAITING AND e.date < :today")
+    int expireWaitingBefore(@Param("today") LocalDate today);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE WaitlistEntry e SET e.status = com.barbershop.backend.model.WaitlistEntry$Status.OFFERED, "
+            + "e.offeredBarberId = :barberId, e.offeredStart = :start, e.offerExpiresAt = :expiresAt "
+            + "WHERE e.id = :id AND e.status = com.barbershop.backend.model.WaitlistEntry$Status.WAITING")
+    int offer(@Param("id") Long id, @Param("barberId") Long barberId, @Param("start") LocalDateTime start,
+            @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE WaitlistEntry e SET e.status = com.barbershop.backend.model.WaitlistEntry$Status.WAITING, "
+            + "e.offeredBarberId = NULL, e.offeredStart = NULL, e.offerExpiresAt = NULL "
+            + "WHERE e.id = :id AND e.status = :from")
+    int requeue(@Param("id") Long id, @Param("from") WaitlistEntry.Status from);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE WaitlistEntry e SET e.appointmentId = :appointmentId, e.offerExpiresAt = NULL "
+            + "WHERE e.id = :id AND e.status = com.barbershop.backend.model.WaitlistEntry$Status.BOOKED")
+    int booked(@Param("id") Long id, @Param("appointmentId") Long appointmentId);
+}
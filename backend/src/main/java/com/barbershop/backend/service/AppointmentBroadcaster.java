@@ -0,0 +1,212 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.payload.response.AppointmentSummary;
+import com.barbershop.backend.repository.AppointmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans appointment changes out to the front desk boards over Server-Sent Events.
+ *
+ * A subscriber first receives today's board and then incremental "created",
+ * "updated" and "deleted" events. Each subscriber has a bounded buffer drained
+ * off the request thread, so a slow client never blocks the request that mutated
+ * the data. A subscriber is drained by at most one thread at a time, so a stalled
+ * socket only ever holds up its own client. A client whose buffer overflows, or
+ * whose send takes longer than {@link #SEND_TIMEOUT_MS}, is dropped and resyncs
+ * on reconnect.
+ */
+@Service
+public class AppointmentBroadcaster {
+
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L;
+    private static final int CLIENT_BUFFER_SIZE = 64;
+    private static final long SEND_TIMEOUT_MS = 10_000L;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    // Grows with the subscribers being drained at once, never more than one thread per subscriber
+    private final ExecutorService dispatcher = Executors.newCachedThreadPool(new ThreadFactory());
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        // Register before loading the board so no change can fall in between; events
+        // that arrive meanwhile queue up behind the board and are idempotent upserts.
+        // The board is loaded on the dispatcher so the long-lived request never holds
+        // a persistence context or DB connection.
+        subscribers.add(subscriber);
+        dispatcher.execute(() -> {
+            LocalDate today = LocalDate.now();
+            List<AppointmentSummary> board = appointmentRepository.findSummariesByStartTimeBetween(
+                    today.atStartOfDay(), today.atTime(LocalTime.MAX));
+            if (subscriber.dropped) {
+                return;
+            }
+            if (!subscriber.queue.offerFirst(new Event("board", board))) {
+                subscribers.remove(subscriber);
+                subscriber.emitter.complete();
+                return;
+            }
+            subscriber.ready = true;
+            schedule(subscriber);
+        });
+        return emitter;
+    }
+
+    public void created(AppointmentSummary appointment) {
+        if (LocalDate.now().equals(appointment.getStartTime().toLocalDate())) {
+            publish(new Event("created", appointment));
+        }
+    }
+
+    // Sent whatever the day, so a board can drop a booking that was moved away or cancelled
+    public void updated(AppointmentSummary appointment) {
+        publish(new Event("updated", appointment));
+    }
+
+    public void deleted(Long appointmentId) {
+        publish(new Event("deleted", Collections.singletonMap("id", appointmentId)));
+    }
+
+    // Keeps idle connections open through proxies
+    @Scheduled(fixedRate = 25000)
+    public void heartbeat() {
+        if (!subscribers.isEmpty()) {
+            publish(new Event("ping", Collections.emptyMap()));
+        }
+    }
+
+    // A send blocked on a dead or stalled socket cannot be interrupted, but the client
+    // stops receiving events and is completed as soon as the write returns or fails
+    @Scheduled(fixedRate = 5000)
+    public void dropStalled() {
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            long since = subscriber.sendingSince;
+            if (since != 0 && now - since > SEND_TIMEOUT_MS) {
+                drop(subscriber);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        subscribers.forEach(s -> s.emitter.complete());
+    }
+
+    private void publish(Event event) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.queue.offerLast(event)) {
+                // Too slow to keep up: drop it, the client reloads the board on reconnect
+                drop(subscriber);
+                continue;
+            }
+            schedule(subscriber);
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.ready && subscriber.draining.compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(subscriber));
+        }
+    }
+
+    // Completing the emitter waits for a send in progress, so it is always left to the drain
+    private void drop(Subscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        subscriber.dropped = true;
+        subscriber.queue.clear();
+        if (subscriber.draining.compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            Event event;
+            while (!subscriber.dropped && (event = subscriber.queue.pollFirst()) != null) {
+                subscriber.sendingSince = System.currentTimeMillis();
+                subscriber.emitter.send(SseEmitter.event().name(event.type).data(event.data));
+                subscriber.sendingSince = 0;
+            }
+            if (subscriber.dropped) {
+                subscriber.emitter.complete();
+                return;
+            }
+        } catch (IOException | IllegalStateException e) {
+            subscribers.remove(subscriber);
+            subscriber.dropped = true;
+            subscriber.emitter.completeWithError(e);
+            return;
+        } finally {
+            subscriber.sendingSince = 0;
+            subscriber.draining.set(false);
+        }
+        // An event may have slipped in after the last poll
+        if (!subscriber.queue.isEmpty()) {
+            schedule(subscriber);
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingDeque<Event> queue = new LinkedBlockingDeque<>(CLIENT_BUFFER_SIZE);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean ready;
+        private volatile boolean dropped;
+        // Start of the send in progress, 0 when idle
+        private volatile long sendingSince;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    private static final class Event {
+        private final String type;
+        private final Object data;
+
+        private Event(String type, Object data) {
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    private static final class ThreadFactory implements java.util.concurrent.ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "appointment-sse-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.payload.request.AppointmentPageRequest;
+import com.barbershop.backend.payload.response.AppointmentSummary;
+import com.barbershop.backend.payload.response.KeysetPage;
+import com.barbershop.backend.repository.AppointmentRepository;
+import com.barbershop.backend.repository.ArchivedAppointmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keyset (startTime, id) pagination for the appointment lists, so a page costs
+ * the same whether it is the first or the thousandth one.
+ */
+@Service
+public class AppointmentQueryService {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private static final LocalDateTime MIN_TIME = LocalDateTime.of(2000, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TIME = LocalDateTime.of(3000, 1, 1, 0, 0);
+
+    private static final Comparator<AppointmentSummary> KEYSET_ORDER = Comparator
+            .comparing(AppointmentSummary::getStartTime)
+            .thenComparing(AppointmentSummary::getId);
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private ArchivedAppointmentRepository archivedAppointmentRepository;
+
+    public KeysetPage<AppointmentSummary> findAll(AppointmentPageRequest request) {
+        return page(null, null, request);
+    }
+
+    public KeysetPage<AppointmentSummary> findByBarber(Long barberId, AppointmentPageRequest request) {
+        return page(barberId, null, request);
+    }
+
+    public KeysetPage<AppointmentSummary> findByUser(Long userId, AppointmentPageRequest request) {
+        return page(null, userId, request);
+    }
+
+    private KeysetPage<AppointmentSummary> page(Long barberId, Long userId, AppointmentPageRequest request) {
+        LocalDateTime from = request.getFrom() != null ? parseBound(request.getFrom(), false) : MIN_TIME;
+        LocalDateTime to = request.getTo() != null ? parseBound(request.getTo(), true) : MAX_TIME;
+        int size = request.getSize() == null ? DEFAULT_PAGE_SIZE
+                : Math.max(1, Math.min(request.getSize(), MAX_PAGE_SIZE));
+
+        // Without a cursor start just before the window; ids are always positive
+        LocalDateTime afterStart = from;
+        long afterId = 0;
+        if (request.getCursor() != null) {
+            String[] parts = new String(Base64.getUrlDecoder().decode(request.getCursor()), StandardCharsets.UTF_8)
+                    .split("\\|");
+            afterStart = LocalDateTime.parse(parts[0]);
+            afterId = Long.parseLong(parts[1]);
+        }
+
+        // One extra row tells whether another page exists
+        PageRequest limit = PageRequest.of(0, size + 1);
+        List<AppointmentSummary> rows;
+        if (barberId != null) {
+            rows = appointmentRepository.findPageByBarber(barberId, from, to, afterStart, afterId, limit);
+        } else if (userId != null) {
+            rows = appointmentRepository.findPageByUser(userId, from, to, afterStart, afterId, limit);
+        } else {
+            rows = appointmentRepository.findPage(from, to, afterStart, afterId, limit);
+        }
+
+        if (Boolean.TRUE.equals(request.getIncludeHistory())) {
+            List<AppointmentSummary> archived;
+            if (barberId != null) {
+                archived = archivedAppointmentRepository.findPageByBarber(barberId, from, to, afterStart, afterId,
+                        limit);
+            } else if (userId != null) {
+                archived = archivedAppointmentRepository.findPageByUser(userId, from, to, afterStart, afterId, limit);
+            } else {
+                archived = archivedAppointmentRepository.findPage(from, to, afterStart, afterId, limit);
+            }
+            // Both sides are sorted by the keyset, so the first size + 1 of the union is the page
+            List<AppointmentSummary> merged = new ArrayList<>(rows.size() + archived.size());
+            merged.addAll(rows);
+            merged.addAll(archived);
+            merged.sort(KEYSET_ORDER);
+            rows = merged.size() > size + 1 ? merged.subList(0, size + 1) : merged;
+        }
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            AppointmentSummary last = rows.get(size - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (last.getStartTime() + "|" + last.getId()).getBytes(StandardCharsets.UTF_8));
+        }
+        return new KeysetPage<>(rows, nextCursor);
+    }
+
+    private static LocalDateTime parseBound(String value, boolean upper) {
+        if (value.length() == 10) {
+            LocalDate date = LocalDate.parse(value);
+            return upper ? date.plusDays(1).atStartOfDay() : date.atStartOfDay();
+        }
+        return LocalDateTime.parse(value);
+    }
+}
@@ -0,0 +1,155 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.model.CashCut;
+import com.barbershop.backend.repository.CashCutRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves finished appointments and old sales out of the hot tables.
+ *
+ * Rows older than the configured horizon are copied to the *_archive tables and
+ * deleted in small batches, each in its own short transaction, so the calendar
+ * and register queries keep scanning only recent data and live bookings never
+ * wait behind one long archive transaction.
+ *
+ * Sales are only archived before the last cash cut, since the open register
+ * period is summed from the hot table.
+ */
+@Service
+public class ArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveService.class);
+
+    private static final String APPOINTMENT_COLUMNS = "id, created_at, created_by, creation_source, end_time, "
+            + "guest_email, guest_name, guest_phone, notes, start_time, status, appointment_type_id, barber_id, user_id, "
+            + "series_id";
+
+    private static final String SALE_COLUMNS = "id, date, guest_name, notes, payment_method, status, total_amount, "
+            + "user_id, created_by_user_id, client_date, client_ref";
+
+    private static final String SALE_ITEM_COLUMNS = "id, item_name, price, quantity, subtotal, barber_id, product_id, "
+            + "sale_id, appointment_type_id, commission_rate";
+
+    @Value("${barbershop.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${barbershop.archive.horizon-days:365}")
+    private int horizonDays;
+
+    @Value("${barbershop.archive.batch-size:500}")
+    private int batchSize;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CashCutRepository cutRepository;
+
+    @Autowired
+    private AvailabilityIndexService availabilityIndex;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Scheduled(cron = "${barbershop.archive.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            archive();
+        }
+    }
+
+    /**
+     * Archives everything past the horizon. Returns the number of appointments and
+     * sales moved, or an empty map when another run is still in progress.
+     */
+    public Map<String, Integer> archive() {
+        if (!running.compareAndSet(false, true)) {
+            return Map.of();
+        }
+        try {
+            LocalDateTime horizon = LocalDateTime.now().minusDays(horizonDays);
+            int appointments = archiveAppointments(horizon);
+
+            // The open register period must stay in the hot table
+            LocalDateTime lastCut = cutRepository.findTopByOrderByTimestampDesc()
+                    .map(CashCut::getTimestamp).orElse(null);
+            int sales = 0;
+            if (lastCut != null) {
+                sales = archiveSales(lastCut.isBefore(horizon) ? lastCut : horizon);
+            }
+
+            logger.info("Archived {} appointments and {} sales", appointments, sales);
+            return Map.of("appointments", appointments, "sales", sales);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int archiveAppointments(LocalDateTime horizon) {
+        int total = 0;
+        while (true) {
+            List<Long> ids = transactionTemplate.execute(status -> {
+                // Lock the batch so a concurrent edit cannot slip between the copy and the delete
+                List<Long> batch = jdbc.queryForList("SELECT id FROM appointments WHERE start_time < :horizon "
+                        + "AND status IN ('COMPLETED', 'CANCELLED') ORDER BY id FETCH FIRST " + batchSize
+                        + " ROWS ONLY FOR UPDATE", new MapSqlParameterSource("horizon", horizon), Long.class);
+                if (batch.isEmpty()) {
+                    return batch;
+                }
+                MapSqlParameterSource params = new MapSqlParameterSource("ids", batch)
+                        .addValue("now", LocalDateTime.now());
+                jdbc.update("INSERT INTO appointments_archive (" + APPOINTMENT_COLUMNS + ", archived_at) SELECT "
+                        + APPOINTMENT_COLUMNS + ", :now FROM appointments WHERE id IN (:ids)", params);
+                jdbc.update("DELETE FROM appointments WHERE id IN (:ids)", params);
+                return batch;
+            });
+            if (ids == null || ids.isEmpty()) {
+                return total;
+            }
+            ids.forEach(availabilityIndex::remove);
+            total += ids.size();
+        }
+    }
+
+    private int archiveSales(LocalDateTime cutoff) {
+        int total = 0;
+        while (true) {
+            Integer moved = transactionTemplate.execute(status -> {
+                List<Long> batch = jdbc.queryForList("SELECT id FROM sales WHERE date < :cutoff ORDER BY id "
+                        + "FETCH FIRST " + batchSize + " ROWS ONLY FOR UPDATE",
+                        new MapSqlParameterSource("cutoff", cutoff), Long.class);
+                if (batch.isEmpty()) {
+                    return 0;
+                }
+                MapSqlParameterSource params = new MapSqlParameterSource("ids", batch)
+                        .addValue("now", LocalDateTime.now());
+                jdbc.update("INSERT INTO sales_archive (" + SALE_COLUMNS + ", archived_at) SELECT " + SALE_COLUMNS
+                        + ", :now FROM sales WHERE id IN (:ids)", params);
+                jdbc.update("INSERT INTO sale_items_archive (" + SALE_ITEM_COLUMNS + ") SELECT " + SALE_ITEM_COLUMNS
+                        + " FROM sale_items WHERE sale_id IN (:ids)", params);
+                jdbc.update("DELETE FROM sale_items WHERE sale_id IN (:ids)", params);
+                jdbc.update("DELETE FROM sales WHERE id IN (:ids)", params);
+                return batch.size();
+            });
+            if (moved == null || moved == 0) {
+                return total;
+            }
+            total += moved;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.model.Appointment;
+import com.barbershop.backend.model.Barber;
+import com.barbershop.backend.repository.AppointmentRepository;
+import com.barbershop.backend.repository.BarberRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory occupancy index for the booking calendar.
+ *
+ * Each (barber, day) keeps a bitmap of occupied time quanta, so availability
+ * checks never hit the database once the day is loaded. Days are loaded lazily
+ * from {@link AppointmentRepository} on first access and kept in sync by the
+ * controllers after every successful create, update or delete.
+ *
+ * Occupancy is interval based: an appointment blocks every quantum between its
+ * start and end time, so a 45 minute service at 9:30 also blocks the 9:00 and
+ * 10:00 windows of a 60 minute query.
+ *
+ * Only days from today up to the booking horizon of known barbers are kept; past
+ * days are dropped every night. Any other day (a past one, or one asked for by
+ * an arbitrary public request) is read from the database for that call alone, so
+ * the index cannot grow with the keys callers make up.
+ */
+@Service
+public class AvailabilityIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityIndexService.class);
+
+    public static final int QUANTUM_MINUTES = 15;
+    private static final int QUANTA_PER_DAY = 24 * 60 / QUANTUM_MINUTES;
+
+    // Business hours: 9am to 6pm
+    public static final LocalTime OPENING_TIME = LocalTime.of(9, 0);
+    public static final LocalTime CLOSING_TIME = LocalTime.of(18, 0);
+    public static final int DEFAULT_DURATION_MINUTES = 60;
+
+    // Days warmed on startup so the first calendar renders are served from memory
+    private static final int WARM_UP_DAYS = 14;
+
+    @Value("${barbershop.availability.horizon-days:365}")
+    private int horizonDays;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private BarberRepository barberRepository;
+
+    private final ConcurrentHashMap<DayKey, DaySchedule> schedules = new ConcurrentHashMap<>();
+
+    // Reverse lookup so updates can drop the previous position of an appointment
+    private final ConcurrentHashMap<Long, DayKey> locations = new ConcurrentHashMap<>();
+
+    // Barber ids seen in the database; unknown ids are looked up every time and never cached
+    private final Set<Long> knownBarbers = ConcurrentHashMap.newKeySet();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        LocalDate today = LocalDate.now();
+        List<Long> barberIds = barberRepository.findByActiveTrue().stream()
+                .map(Barber::getId)
+                .collect(Collectors.toList());
+        knownBarbers.addAll(barberIds);
+        preload(barberIds, today, today.plusDays(WARM_UP_DAYS - 1));
+    }
+
+    @Scheduled(cron = "${barbershop.availability.evict-cron:0 5 0 * * *}")
+    public void evictPastDays() {
+        LocalDate today = LocalDate.now();
+        int evicted = 0;
+        for (DayKey key : new ArrayList<>(schedules.keySet())) {
+            if (key.date.isBefore(today)) {
+                // Inside the map's lock for the key, so a concurrent reload of the day cannot interleave
+                schedules.computeIfPresent(key, (k, day) -> {
+                    day.ids().forEach(id -> locations.remove(id, k));
+                    return null;
+                });
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            logger.debug("Evicted {} past barber days from the availability index", evicted);
+        }
+    }
+
+    /**
+     * Loads every (barber, day) of the range that is not indexed yet with a single
+     * range query, instead of one query per barber per day. Days outside the
+     * horizon and unknown barbers are skipped.
+     */
+    public void preload(Collection<Long> barberIds, LocalDate from, LocalDate to) {
+        LocalDate today = LocalDate.now();
+        LocalDate first = from.isBefore(today) ? today : from;
+        LocalDate last = to.isAfter(lastIndexedDay()) ? lastIndexedDay() : to;
+        Map<DayKey, DaySchedule> loaded = new HashMap<>();
+        for (Long barberId : barberIds) {
+            if (!isKnownBarber(barberId)) {
+                continue;
+            }
+            for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+                DayKey key = new DayKey(barberId, day);
+                if (!schedules.containsKey(key)) {
+                    loaded.put(key, new DaySchedule());
+                }
+            }
+        }
+        if (loaded.isEmpty()) {
+            return;
+        }
+
+        for (AppointmentRepository.Interval interval : appointmentRepository.findActiveIntervals(
+                first.atStartOfDay(), last.atTime(LocalTime.MAX))) {
+            DayKey key = new DayKey(interval.getBarberId(), interval.getStartTime().toLocalDate());
+            DaySchedule day = loaded.get(key);
+            if (day != null) {
+                day.put(interval.getId(), interval.getStartTime(), interval.getEndTime());
+                locations.put(interval.getId(), key);
+            }
+        }
+        loaded.forEach(schedules::putIfAbsent);
+    }
+
+    /**
+     * True when no active appointment of the barber overlaps [start, start + minutes).
+     */
+    public boolean isFree(Long barberId, LocalDateTime start, int minutes) {
+        return isFree(barberId, start, minutes, null);
+    }
+
+    /**
+     * Same as {@link #isFree(Long, LocalDateTime, int)} but ignores one appointment,
+     * used when an existing booking is being moved.
+     */
+    public boolean isFree(Long barberId, LocalDateTime start, int minutes, Long ignoredAppointmentId) {
+        int from = quantumOf(start.toLocalTime());
+        int to = Math.min(QUANTA_PER_DAY, ceilQuantum(start.toLocalTime(), minutes));
+        return schedule(barberId, start.toLocalDate()).isFree(from, to, ignoredAppointmentId);
+    }
+
+    /**
+     * Start times of every free window of the given length inside business hours,
+     * stepping by {@code stepMinutes}. Blocked runs are skipped in one jump instead
+     * of being probed window by window.
+     */
+    public List<LocalDateTime> findFreeWindows(Long barberId, LocalDate date, int durationMinutes, int stepMinutes) {
+        int step = Math.max(1, stepMinutes / QUANTUM_MINUTES);
+        int length = Math.max(1, (durationMinutes + QUANTUM_MINUTES - 1) / QUANTUM_MINUTES);
+        int open = quantumOf(OPENING_TIME);
+        int close = quantumOf(CLOSING_TIME);
+
+        // Never offer windows that already started
+        LocalDateTime now = LocalDateTime.now();
+        if (date.isBefore(now.toLocalDate()) || date.isAfter(lastIndexedDay()) || !isKnownBarber(barberId)) {
+            return new ArrayList<>();
+        }
+        int earliest = date.equals(now.toLocalDate()) ? ceilQuantum(now.toLocalTime(), 0) : open;
+
+        return schedule(barberId, date).freeWindows(open, close, earliest, length, step).stream()
+                .map(q -> date.atStartOfDay().plusMinutes((long) q * QUANTUM_MINUTES))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Bounds of the free run of the barber that contains {@code start}, clipped to
+     * business hours and to now, as {runStart, runEnd}; null when start is taken.
+     */
+    public LocalDateTime[] freeRunAt(Long barberId, LocalDateTime start) {
+        LocalDate date = start.toLocalDate();
+        LocalDateTime now = LocalDateTime.now();
+        if (date.isBefore(now.toLocalDate()) || date.isAfter(lastIndexedDay()) || !isKnownBarber(barberId)) {
+            return null;
+        }
+        int open = quantumOf(OPENING_TIME);
+        if (date.equals(now.toLocalDate())) {
+            open = Math.max(open, ceilQuantum(now.toLocalTime(), 0));
+        }
+        int close = quantumOf(CLOSING_TIME);
+        int at = quantumOf(start.toLocalTime());
+        if (at < open || at >= close) {
+            return null;
+        }
+
+        int[] run = schedule(barberId, date).freeRun(at, open, close);
+        if (run == null) {
+            return null;
+        }
+        return new LocalDateTime[] {
+                date.atStartOfDay().plusMinutes((long) run[0] * QUANTUM_MINUTES),
+                date.atStartOfDay().plusMinutes((long) run[1] * QUANTUM_MINUTES) };
+    }
+
+    /**
+     * Records the current state of a persisted appointment, moving it if its barber
+     * or day changed and dropping it once it is cancelled.
+     */
+    public void index(Appointment appointment) {
+        DayKey previous = locations.remove(appointment.getId());
+        if (previous != null) {
+            schedules.computeIfPresent(previous, (k, day) -> day.remove(appointment.getId()));
+        }
+
+        DayKey key = keyOf(appointment);
+        if (key == null) {
+            return;
+        }
+        // Only touch days that are already loaded; absent days pick the row up from the DB
+        schedules.computeIfPresent(key, (k, day) -> {
+            locations.put(appointment.getId(), k);
+            return day.put(appointment.getId(), appointment.getStartTime(), appointment.getEndTime());
+        });
+    }
+
+    public void remove(Long appointmentId) {
+        DayKey previous = locations.remove(appointmentId);
+        if (previous != null) {
+            schedules.computeIfPresent(previous, (k, day) -> day.remove(appointmentId));
+        }
+    }
+
+    private DaySchedule schedule(Long barberId, LocalDate date) {
+        DayKey key = new DayKey(barberId, date);
+        if (date.isBefore(LocalDate.now()) || date.isAfter(lastIndexedDay()) || !isKnownBarber(barberId)) {
+            // Answered from the database without keeping the day
+            return load(key, false);
+        }
+        // computeIfAbsent keeps concurrent index() calls for the same day ordered after the load
+        return schedules.computeIfAbsent(key, k -> load(k, true));
+    }
+
+    private DaySchedule load(DayKey key, boolean tracked) {
+        DaySchedule day = new DaySchedule();
+        for (AppointmentRepository.Interval interval : appointmentRepository.findActiveIntervalsByBarber(
+                key.barberId, key.date.atStartOfDay(), key.date.atTime(LocalTime.MAX))) {
+            day.put(interval.getId(), interval.getStartTime(), interval.getEndTime());
+            if (tracked) {
+                locations.put(interval.getId(), key);
+            }
+        }
+        return day;
+    }
+
+    private LocalDate lastIndexedDay() {
+        return LocalDate.now().plusDays(horizonDays);
+    }
+
+    private boolean isKnownBarber(Long barberId) {
+        if (barberId == null) {
+            return false;
+        }
+        if (knownBarbers.contains(barberId)) {
+            return true;
+        }
+        if (barberRepository.existsById(barberId)) {
+            knownBarbers.add(barberId);
+            return true;
+        }
+        return false;
+    }
+
+    private static DayKey keyOf(Appointment appointment) {
+        if (appointment.getBarber() == null || appointment.getStartTime() == null
+                || appointment.getStatus() == Appointment.Status.CANCELLED) {
+            return null;
+        }
+        return new DayKey(appointment.getBarber().getId(), appointment.getStartTime().toLocalDate());
+    }
+
+    private static int quantumOf(LocalTime time) {
+        return (time.getHour() * 60 + time.getMinute()) / QUANTUM_MINUTES;
+    }
+
+    private static int ceilQuantum(LocalTime time, int minutes) {
+        int end = time.getHour() * 60 + time.getMinute() + minutes;
+        return (end + QUANTUM_MINUTES - 1) / QUANTUM_MINUTES;
+    }
+
+    private static final class DayKey {
+        private final Long barberId;
+        private final LocalDate date;
+
+        private DayKey(Long barberId, LocalDate date) {
+            this.barberId = barberId;
+            this.date = date;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DayKey)) {
+                return false;
+            }
+            DayKey other = (DayKey) o;
+            return barberId.equals(other.barberId) && date.equals(other.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(barberId, date);
+        }
+    }
+
+    private static final class DaySchedule {
+        // appointment id -> {first quantum, end quantum (exclusive)}
+        private final Map<Long, int[]> bookings = new HashMap<>();
+        private final BitSet occupied = new BitSet(QUANTA_PER_DAY);
+
+        synchronized DaySchedule put(Long id, LocalDateTime startTime, LocalDateTime endTime) {
+            int from = quantumOf(startTime.toLocalTime());
+            int to;
+            if (endTime == null || !endTime.toLocalDate().equals(startTime.toLocalDate())) {
+                to = QUANTA_PER_DAY;
+            } else {
+                to = Math.max(from + 1, ceilQuantum(endTime.toLocalTime(), 0));
+            }
+            bookings.put(id, new int[] { from, to });
+            rebuild();
+            return this;
+        }
+
+        synchronized List<Long> ids() {
+            return new ArrayList<>(bookings.keySet());
+        }
+
+        synchronized DaySchedule remove(Long id) {
+            if (bookings.remove(id) != null) {
+                rebuild();
+            }
+            return this;
+        }
+
+        synchronized boolean isFree(int from, int to, Long ignoredId) {
+            if (ignoredId == null || !bookings.containsKey(ignoredId)) {
+                int next = occupied.nextSetBit(from);
+                return next < 0 || next >= to;
+            }
+            for (Map.Entry<Long, int[]> booking : bookings.entrySet()) {
+                int[] range = booking.getValue();
+                if (!booking.getKey().equals(ignoredId) && range[0] < to && from < range[1]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        synchronized List<Integer> freeWindows(int open, int close, int earliest, int length, int step) {
+            List<Integer> windows = new ArrayList<>();
+            int start = open;
+            while (start + length <= close) {
+                if (start < earliest) {
+                    start += step;
+                    continue;
+                }
+                int blocked = occupied.nextSetBit(start);
+                if (blocked < 0 || blocked >= start + length) {
+                    windows.add(start);
+                    start += step;
+                } else {
+                    // Jump past the occupied run, realigned to the step grid
+                    int freeAt = occupied.nextClearBit(blocked);
+                    start += ((freeAt - start + step - 1) / step) * step;
+                }
+            }
+            return windows;
+        }
+
+        synchronized int[] freeRun(int at, int open, int close) {
+            if (occupied.get(at)) {
+                return null;
+            }
+            int start = Math.max(open, occupied.previousSetBit(at) + 1);
+            int next = occupied.nextSetBit(at);
+            int end = next < 0 ? close : Math.min(close, next);
+            return new int[] { start, end };
+        }
+
+        // Rebuilt from the handful of bookings of the day so overlapping rows stay correct on removal
+        private void rebuild() {
+            occupied.clear();
+            for (int[] range : bookings.values()) {
+                occupied.set(range[0], range[1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.barbershop.backend.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Where the content of uploaded files is kept, addressed by the SHA-256 of its
+ * bytes. The database only holds the metadata and the hash, and storing the
+ * same bytes twice keeps a single copy.
+ */
+public interface BlobStore {
+
+    /**
+     * Stores the content (unless the store already has it) and returns its hash
+     * and size.
+     */
+    StoredBlob put(InputStream content) throws IOException;
+
+    boolean contains(String hash);
+
+    InputStream open(String hash) throws IOException;
+
+    /**
+     * Writes {@code length} bytes of the content starting at {@code offset}.
+     */
+    void transferTo(String hash, long offset, long length, WritableByteChannel target) throws IOException;
+
+    /**
+     * The file holding the content, for stores on the local disk, so the server
+     * can send it with sendfile.
+     */
+    Optional<Path> localPath(String hash);
+}
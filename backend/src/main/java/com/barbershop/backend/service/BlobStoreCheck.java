@@ -0,0 +1,96 @@
+package com.barbershop.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks at startup that the blob store holds every file db_files points to.
+ *
+ * A missing blob usually means the blob directory is not on a persistent volume
+ * and the container was replaced. Files uploaded before V13 still have their
+ * bytes in db_files.data and are written back to the store; any other missing
+ * file stops the application, since it would otherwise start and serve 404s
+ * for images that are gone. Set {@code barbershop.files.verify=false} to start
+ * anyway once the loss is known and accepted.
+ *
+ * Runs after the Flyway migrations, since the JdbcTemplate waits for them.
+ */
+@Component
+public class BlobStoreCheck {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobStoreCheck.class);
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${barbershop.files.dir:./data/files}")
+    private String dir;
+
+    @Value("${barbershop.files.verify:true}")
+    private boolean verify;
+
+    @PostConstruct
+    public void check() {
+        if (!verify) {
+            return;
+        }
+        List<String> missing = new ArrayList<>();
+        int restored = 0;
+        for (String hash : jdbcTemplate.queryForList(
+                "SELECT DISTINCT content_hash FROM db_files WHERE content_hash IS NOT NULL", String.class)) {
+            if (blobStore.contains(hash)) {
+                continue;
+            }
+            if (restore(hash)) {
+                restored++;
+            } else {
+                missing.add(hash);
+            }
+        }
+        if (restored > 0) {
+            logger.warn("Restored {} blobs from db_files.data into {}", restored, dir);
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException(missing.size() + " uploaded files are missing from the blob store at "
+                    + dir + " (first: " + missing.get(0) + "). Mount the persistent volume that holds them at "
+                    + "FILES_DIR (/data/files in the Docker image), or set FILES_VERIFY=false to start without them.");
+        }
+    }
+
+    // Large objects can only be read inside a transaction on PostgreSQL
+    private boolean restore(String hash) {
+        Boolean restored = transactionTemplate.execute(tx -> {
+            List<Blob> data = jdbcTemplate.query(
+                    "SELECT data FROM db_files WHERE content_hash = ? AND data IS NOT NULL",
+                    (rs, rowNum) -> rs.getBlob(1), hash);
+            if (data.isEmpty()) {
+                return false;
+            }
+            try (InputStream content = data.get(0).getBinaryStream()) {
+                return hash.equals(blobStore.put(content).getHash());
+            } catch (Exception e) {
+                logger.error("Could not restore blob {} from db_files.data", hash, e);
+                return false;
+            }
+        });
+        return Boolean.TRUE.equals(restored);
+    }
+}
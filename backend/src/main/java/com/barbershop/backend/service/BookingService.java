@@ -0,0 +1,236 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.exception.SlotUnavailableException;
+import com.barbershop.backend.model.Appointment;
+import com.barbershop.backend.payload.response.AvailableSlotResponse;
+import com.barbershop.backend.repository.AppointmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Serializes bookings per (barber, day) so two requests can never both see a
+ * slot as free and save it.
+ *
+ * Locks come from a fixed striped table. The stripe of (barber, day) is
+ * {@code barberId * 31 + epochDay} modulo the table size; 31 is coprime with the
+ * size, so two barbers only share a stripe on the same day if their ids differ
+ * by a multiple of {@link #LOCK_STRIPES}.
+ *
+ * The stripes and the availability index only cover this node. Across nodes the
+ * saving transaction locks the barber's row and re-checks the overlap in the
+ * database ({@link #lockCalendar}); the unique (barber_id, slot_start)
+ * constraint on appointments is the last backstop.
+ *
+ * A new booking writes its APPOINTMENT_BOOKED outbox event in the transaction
+ * that saves it.
+ */
+@Service
+public class BookingService {
+
+    private static final int LOCK_STRIPES = 1024;
+    private static final long LOCK_TIMEOUT_MS = 2000;
+    private static final int ALTERNATIVES = 5;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private AvailabilityIndexService availabilityIndex;
+
+    @Autowired
+    private SlotSearchService slotSearchService;
+
+    @Autowired
+    private OutboxService outbox;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public BookingService() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Saves a new or moved appointment if its barber is free for the whole booking,
+     * otherwise throws {@link SlotUnavailableException} with alternatives.
+     */
+    public Appointment book(Appointment appointment) {
+        Long barberId = appointment.getBarber().getId();
+        LocalDateTime start = appointment.getStartTime();
+        int minutes = minutesOf(appointment);
+
+        Appointment saved = null;
+        String failure = "Error: The barber's calendar is busy, please try again.";
+        ReentrantLock lock = lockFor(barberId, start.toLocalDate());
+        if (acquire(lock)) {
+            try {
+                if (!availabilityIndex.isFree(barberId, start, minutes, appointment.getId())) {
+                    failure = "Error: The selected time overlaps another appointment.";
+                } else {
+                    List<Appointment> clashes = new ArrayList<>();
+                    boolean isNew = appointment.getId() == null;
+                    try {
+                        // Commits before the lock is released; a new booking's event commits with it
+                        saved = transactionTemplate.execute(tx -> {
+                            clashes.addAll(lockCalendar(barberId, start, appointment.getEndTime()));
+                            clashes.removeIf(other -> other.getId().equals(appointment.getId()));
+                            if (!clashes.isEmpty()) {
+                                // Undoes the flush of a moved booking
+                                tx.setRollbackOnly();
+                                return null;
+                            }
+                            Appointment result = appointmentRepository.save(appointment);
+                            if (isNew) {
+                                outbox.enqueue(OutboxEvent.APPOINTMENT_BOOKED,
+                                        "appointment-booked:" + result.getId(), bookedPayload(result));
+                            }
+                            return result;
+                        });
+                    } catch (DataIntegrityViolationException e) {
+                        // Another node booked the same start time
+                        failure = "Error: The selected time was just booked by someone else.";
+                    }
+                    if (!clashes.isEmpty()) {
+                        // Booked through another node; teach the index so alternatives skip them
+                        clashes.forEach(availabilityIndex::index);
+                        failure = "Error: The selected time was just booked by someone else.";
+                    }
+                    if (saved != null) {
+                        availabilityIndex.index(saved);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        if (saved == null) {
+            // Outside the lock: the alternatives may search every barber's week
+            throw conflict(appointment, failure);
+        }
+        return saved;
+    }
+
+    /**
+     * Locks the barber's row until the current transaction ends and returns the
+     * barber's active appointments overlapping [from, to). Every path that saves
+     * bookings calls it in the saving transaction, so nodes whose availability
+     * index is stale are still serialized by the database and see each other's
+     * bookings, whatever their start times.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Appointment> lockCalendar(Long barberId, LocalDateTime from, LocalDateTime to) {
+        jdbcTemplate.queryForList("SELECT id FROM barbers WHERE id = ? FOR UPDATE", Long.class, barberId);
+        return appointmentRepository.findActiveOverlapping(barberId, from, to);
+    }
+
+    /**
+     * Runs {@code action} holding the lock of every given day of the barber, for
+     * bookings that span many days at once (recurring series). Stripes are taken
+     * in index order so two such callers cannot deadlock.
+     */
+    public <T> T withDayLocks(Long barberId, Collection<LocalDate> days, Supplier<T> action) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (LocalDate day : days) {
+            stripes.add(stripeOf(barberId, day));
+        }
+
+        List<ReentrantLock> held = new ArrayList<>(stripes.size());
+        try {
+            for (int stripe : stripes) {
+                ReentrantLock lock = locks[stripe];
+                if (!lock.tryLock(LOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    throw new SlotUnavailableException("Error: The barber's calendar is busy, please try again.",
+                            new ArrayList<>());
+                }
+                held.add(lock);
+            }
+            return action.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SlotUnavailableException("Error: The barber's calendar is busy, please try again.",
+                    new ArrayList<>());
+        } finally {
+            held.forEach(ReentrantLock::unlock);
+        }
+    }
+
+    private static boolean acquire(ReentrantLock lock) {
+        try {
+            return lock.tryLock(LOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private ReentrantLock lockFor(Long barberId, LocalDate date) {
+        return locks[stripeOf(barberId, date)];
+    }
+
+    private static int stripeOf(Long barberId, LocalDate date) {
+        return (int) Math.floorMod(barberId * 31 + date.toEpochDay(), (long) LOCK_STRIPES);
+    }
+
+    private SlotUnavailableException conflict(Appointment appointment, String message) {
+        return new SlotUnavailableException(message, alternativesFor(appointment));
+    }
+
+    // Same barber the same day first, then any barber over the following week
+    private List<AvailableSlotResponse> alternativesFor(Appointment appointment) {
+        int minutes = minutesOf(appointment);
+        LocalDate date = appointment.getStartTime().toLocalDate();
+        List<AvailableSlotResponse> alternatives = availabilityIndex
+                .findFreeWindows(appointment.getBarber().getId(), date, minutes, 30).stream()
+                .limit(ALTERNATIVES)
+                .map(start -> new AvailableSlotResponse(appointment.getBarber().getId(),
+                        appointment.getBarber().getName(), start, start.plusMinutes(minutes)))
+                .collect(Collectors.toList());
+        if (alternatives.isEmpty()) {
+            alternatives = slotSearchService.findNextAvailable(date, date.plusDays(6), minutes, 30, ALTERNATIVES);
+        }
+        return alternatives;
+    }
+
+    private static Map<String, Object> bookedPayload(Appointment appointment) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("appointmentId", appointment.getId());
+        payload.put("barberId", appointment.getBarber().getId());
+        payload.put("startTime", appointment.getStartTime().toString());
+        payload.put("userId", appointment.getUser() != null ? appointment.getUser().getId() : null);
+        payload.put("email", appointment.getUser() != null ? appointment.getUser().getEmail()
+                : appointment.getGuestEmail());
+        payload.put("source", appointment.getCreationSource());
+        return payload;
+    }
+
+    private static int minutesOf(Appointment appointment) {
+        return (int) Math.max(1, Duration.between(appointment.getStartTime(), appointment.getEndTime()).toMinutes());
+    }
+}
@@ -0,0 +1,220 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.model.CashCut;
+import com.barbershop.backend.payload.response.CashMovement;
+import com.barbershop.backend.payload.response.KeysetPage;
+import com.barbershop.backend.payload.response.SaleItemLabel;
+import com.barbershop.backend.repository.CashCutRepository;
+import com.barbershop.backend.repository.CashWithdrawalRepository;
+import com.barbershop.backend.repository.SaleItemRepository;
+import com.barbershop.backend.repository.SaleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+/**
+ * Cash register history since the last cut, newest first, built as a merge of
+ * two keyset cursors over sales and withdrawals. Each cursor only holds one
+ * chunk of rows, so memory stays flat however long the register has been open.
+ *
+ * Rows are ordered by (date desc, SALE before WITHDRAWAL, id desc); the page
+ * cursor encodes that position.
+ */
+@Service
+public class CashHistoryService {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    // Rows fetched per query while streaming the whole period
+    private static final int CHUNK_SIZE = 200;
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TIME = LocalDateTime.of(3000, 1, 1, 0, 0);
+
+    private static final Comparator<CashMovement> NEWEST_FIRST = Comparator
+            .comparing(CashMovement::getDate).reversed()
+            .thenComparingInt(CashHistoryService::rank)
+            .thenComparing(Comparator.comparing(CashMovement::getId).reversed());
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private SaleItemRepository saleItemRepository;
+
+    @Autowired
+    private CashWithdrawalRepository withdrawalRepository;
+
+    @Autowired
+    private CashCutRepository cutRepository;
+
+    /**
+     * One page of the current period, starting after {@code cursor} (null for the newest).
+     */
+    public KeysetPage<CashMovement> page(String cursor, Integer size) {
+        int limit = size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        // Each side needs at most limit + 1 rows to fill the page and detect the next one
+        Iterator<CashMovement> merged = merge(cursor, limit + 1);
+        List<CashMovement> rows = new ArrayList<>(limit);
+        while (rows.size() < limit && merged.hasNext()) {
+            rows.add(merged.next());
+        }
+
+        String nextCursor = null;
+        if (merged.hasNext() && !rows.isEmpty()) {
+            CashMovement last = rows.get(rows.size() - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (last.getDate() + "|" + last.getType() + "|" + last.getId()).getBytes(StandardCharsets.UTF_8));
+        }
+        return new KeysetPage<>(rows, nextCursor);
+    }
+
+    /**
+     * Every movement of the current period, fetched chunk by chunk as it is consumed.
+     */
+    public Iterator<CashMovement> iterateCurrentPeriod() {
+        return merge(null, CHUNK_SIZE);
+    }
+
+    private Iterator<CashMovement> merge(String cursor, int chunkSize) {
+        LocalDateTime since = cutRepository.findTopByOrderByTimestampDesc()
+                .map(CashCut::getTimestamp)
+                .orElse(EPOCH);
+
+        LocalDateTime beforeDate = MAX_TIME;
+        int beforeRank = 0;
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null) {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            beforeDate = LocalDateTime.parse(parts[0]);
+            beforeRank = CashMovement.SALE.equals(parts[1]) ? 0 : 1;
+            beforeId = Long.parseLong(parts[2]);
+        }
+
+        Cursor sales = new Cursor(chunkSize, beforeDate, startId(0, beforeRank, beforeId),
+                (date, id, limit) -> withItemSummaries(saleRepository.findHistoryChunk(since, date, id, limit)));
+        Cursor withdrawals = new Cursor(chunkSize, beforeDate, startId(1, beforeRank, beforeId),
+                (date, id, limit) -> withdrawalRepository.findHistoryChunk(since, date, id, limit));
+        return new MergeIterator(sales, withdrawals);
+    }
+
+    // At the cursor's date a source sorting before the cursor type is done, one sorting after starts fresh
+    private static long startId(int sourceRank, int beforeRank, long beforeId) {
+        if (sourceRank == beforeRank) {
+            return beforeId;
+        }
+        return sourceRank < beforeRank ? 0 : Long.MAX_VALUE;
+    }
+
+    // One query for the items of the whole chunk instead of touching each sale's collection
+    private List<CashMovement> withItemSummaries(List<CashMovement> sales) {
+        if (sales.isEmpty()) {
+            return sales;
+        }
+        Map<Long, String> summaries = saleItemRepository.findLabelsBySaleIds(
+                sales.stream().map(CashMovement::getId).collect(Collectors.toList())).stream()
+                .collect(Collectors.groupingBy(SaleItemLabel::getSaleId, HashMap::new,
+                        Collectors.mapping(i -> i.getItemName()
+                                + (i.getBarberName() != null ? " (" + i.getBarberName() + ")" : ""),
+                                Collectors.joining(", "))));
+        for (CashMovement sale : sales) {
+            StringBuilder desc = new StringBuilder(sale.getDescription());
+            desc.append(summaries.getOrDefault(sale.getId(), ""));
+            if (sale.getClient() != null) {
+                desc.append(" | Cliente: ").append(sale.getClient());
+            }
+            sale.setDescription(desc.toString());
+        }
+        return sales;
+    }
+
+    private static int rank(CashMovement movement) {
+        return CashMovement.SALE.equals(movement.getType()) ? 0 : 1;
+    }
+
+    @FunctionalInterface
+    private interface ChunkQuery {
+        List<CashMovement> fetch(LocalDateTime beforeDate, Long beforeId, PageRequest limit);
+    }
+
+    // Keyset cursor over one source that refills its buffer one chunk at a time
+    private static final class Cursor {
+        private final int chunkSize;
+        private final ChunkQuery query;
+        private final Deque<CashMovement> buffer = new ArrayDeque<>();
+        private LocalDateTime beforeDate;
+        private long beforeId;
+        private boolean exhausted;
+
+        private Cursor(int chunkSize, LocalDateTime beforeDate, long beforeId, ChunkQuery query) {
+            this.chunkSize = chunkSize;
+            this.beforeDate = beforeDate;
+            this.beforeId = beforeId;
+            this.query = query;
+        }
+
+        CashMovement peek() {
+            if (buffer.isEmpty() && !exhausted) {
+                List<CashMovement> rows = query.fetch(beforeDate, beforeId, PageRequest.of(0, chunkSize));
+                exhausted = rows.size() < chunkSize;
+                if (!rows.isEmpty()) {
+                    CashMovement last = rows.get(rows.size() - 1);
+                    beforeDate = last.getDate();
+                    beforeId = last.getId();
+                    buffer.addAll(rows);
+                }
+            }
+            return buffer.peekFirst();
+        }
+
+        CashMovement poll() {
+            peek();
+            return buffer.pollFirst();
+        }
+    }
+
+    // Two-way merge of already ordered cursors
+    private static final class MergeIterator implements Iterator<CashMovement> {
+        private final Cursor left;
+        private final Cursor right;
+
+        private MergeIterator(Cursor left, Cursor right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return left.peek() != null || right.peek() != null;
+        }
+
+        @Override
+        public CashMovement next() {
+            CashMovement a = left.peek();
+            CashMovement b = right.peek();
+            if (a == null && b == null) {
+                throw new NoSuchElementException();
+            }
+            if (b == null || (a != null && NEWEST_FIRST.compare(a, b) <= 0)) {
+                return left.poll();
+            }
+            return right.poll();
+        }
+    }
+}
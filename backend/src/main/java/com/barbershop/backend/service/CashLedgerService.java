@@ -0,0 +1,204 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.model.CashCut;
+import com.barbershop.backend.model.CashWithdrawal;
+import com.barbershop.backend.model.Sale;
+import com.barbershop.backend.payload.response.MovementTotal;
+import com.barbershop.backend.repository.CashCutRepository;
+import com.barbershop.backend.repository.CashWithdrawalRepository;
+import com.barbershop.backend.repository.SaleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Running totals of the open register period.
+ *
+ * Every sale and withdrawal adds to its bucket in the same transaction that saves
+ * it, so the balance and the cut read a handful of rows instead of summing every
+ * movement since the last cut. A cut empties the ledger in its own transaction.
+ *
+ * A periodic reconciliation recomputes the buckets from the raw rows and repairs
+ * the ledger if they drifted (e.g. rows edited directly in the database).
+ */
+@Service
+public class CashLedgerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CashLedgerService.class);
+
+    public static final String SALE_PREFIX = "SALE:";
+    public static final String WITHDRAWAL = "WITHDRAWAL";
+
+    private static final double TOLERANCE = 0.005;
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private CashWithdrawalRepository withdrawalRepository;
+
+    @Autowired
+    private CashCutRepository cutRepository;
+
+    public static String saleBucket(String paymentMethod) {
+        return SALE_PREFIX + (paymentMethod == null ? "UNKNOWN" : paymentMethod.trim().toUpperCase());
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordSale(Sale sale) {
+        add(saleBucket(sale.getPaymentMethod()), sale.getTotalAmount(), 1);
+    }
+
+    // A batch of sales adds one entry per payment method instead of one per sale
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordSales(Collection<Sale> sales) {
+        Map<String, double[]> byBucket = new TreeMap<>();
+        for (Sale sale : sales) {
+            double[] bucket = byBucket.computeIfAbsent(saleBucket(sale.getPaymentMethod()), b -> new double[2]);
+            bucket[0] += sale.getTotalAmount() == null ? 0 : sale.getTotalAmount();
+            bucket[1]++;
+        }
+        // Sorted buckets keep the row lock order stable between concurrent batches
+        byBucket.forEach((bucket, total) -> add(bucket, total[0], (long) total[1]));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordWithdrawal(CashWithdrawal withdrawal) {
+        add(WITHDRAWAL, withdrawal.getAmount(), 1);
+    }
+
+    /**
+     * Current totals per bucket. Buckets without movements are absent.
+     */
+    public Map<String, Double> totals() {
+        Map<String, Double> totals = new HashMap<>();
+        jdbcTemplate.query("SELECT bucket, total FROM cash_register_ledger",
+                rs -> {
+                    totals.put(rs.getString(1), rs.getDouble(2));
+                });
+        return totals;
+    }
+
+    /**
+     * Locks the ledger, returns its totals and empties it; the caller saves the cut
+     * in the same transaction so no movement can fall between the two periods.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<String, Double> closePeriod() {
+        Map<String, Double> totals = lockedTotals();
+        jdbcTemplate.update("DELETE FROM cash_register_ledger");
+        return totals;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${barbershop.cash.reconcile-ms:900000}",
+            initialDelayString = "${barbershop.cash.reconcile-ms:900000}")
+    @Transactional
+    public void reconcile() {
+        // Lock first so in-flight sales finish and new ones wait for the check
+        Map<String, Double> ledger = lockedTotals();
+        Map<String, double[]> actual = rawTotals();
+
+        boolean drifted = !ledger.keySet().equals(actual.keySet());
+        for (Map.Entry<String, double[]> bucket : actual.entrySet()) {
+            Double recorded = ledger.get(bucket.getKey());
+            if (recorded == null || Math.abs(recorded - bucket.getValue()[0]) > TOLERANCE) {
+                drifted = true;
+            }
+        }
+        if (!drifted) {
+            return;
+        }
+
+        logger.warn("Ledger {} does not match the movements since the last cut, rebuilding", ledger);
+        jdbcTemplate.update("DELETE FROM cash_register_ledger");
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (Map.Entry<String, double[]> bucket : actual.entrySet()) {
+            jdbcTemplate.update("INSERT INTO cash_register_ledger (bucket, total, entries, updated_at) "
+                    + "VALUES (?, ?, ?, ?)", bucket.getKey(), bucket.getValue()[0], (long) bucket.getValue()[1], now);
+        }
+    }
+
+    // Atomic upsert: the UPDATE row lock serializes concurrent movements of a bucket. The
+    // INSERT runs under a savepoint because on PostgreSQL a failed statement aborts the
+    // whole transaction, and the fallback UPDATE only works after rolling back to it.
+    private void add(String bucket, Double amount, long entries) {
+        double value = amount == null ? 0 : amount;
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        String update = "UPDATE cash_register_ledger SET total = total + ?, entries = entries + ?, updated_at = ? "
+                + "WHERE bucket = ?";
+        if (jdbcTemplate.update(update, value, entries, now, bucket) > 0) {
+            return;
+        }
+        try {
+            underSavepoint(() -> jdbcTemplate.update("INSERT INTO cash_register_ledger "
+                    + "(bucket, total, entries, updated_at) VALUES (?, ?, ?, ?)", bucket, value, entries, now));
+        } catch (DuplicateKeyException e) {
+            // Another transaction created the bucket first
+            jdbcTemplate.update(update, value, entries, now, bucket);
+        }
+    }
+
+    // Rolls back to a savepoint if the statement fails, so the transaction stays usable
+    private void underSavepoint(Runnable statement) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                statement.run();
+            } catch (RuntimeException e) {
+                connection.rollback(savepoint);
+                throw e;
+            }
+            connection.releaseSavepoint(savepoint);
+            return null;
+        });
+    }
+
+    private Map<String, Double> lockedTotals() {
+        Map<String, Double> totals = new HashMap<>();
+        jdbcTemplate.query("SELECT bucket, total FROM cash_register_ledger FOR UPDATE",
+                rs -> {
+                    totals.put(rs.getString(1), rs.getDouble(2));
+                });
+        return totals;
+    }
+
+    private LocalDateTime periodStart() {
+        return cutRepository.findTopByOrderByTimestampDesc().map(CashCut::getTimestamp).orElse(BEGINNING);
+    }
+
+    // bucket -> {total, entries} recomputed by the database from the movements since the last cut
+    private Map<String, double[]> rawTotals() {
+        Map<String, double[]> totals = new HashMap<>();
+        LocalDateTime start = periodStart();
+        for (MovementTotal sales : saleRepository.sumByPaymentMethodSince(start)) {
+            totals.put(saleBucket(sales.getKey()), new double[] { sales.getTotal(), sales.getCount() });
+        }
+        MovementTotal withdrawals = withdrawalRepository.sumSince(start);
+        if (withdrawals.getCount() > 0) {
+            totals.put(WITHDRAWAL, new double[] { withdrawals.getTotal(), withdrawals.getCount() });
+        }
+        return totals;
+    }
+}
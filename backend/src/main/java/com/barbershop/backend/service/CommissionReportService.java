@@ -0,0 +1,202 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.model.CashCut;
+import com.barbershop.backend.model.Sale;
+import com.barbershop.backend.model.SaleItem;
+import com.barbershop.backend.payload.response.CommissionLine;
+import com.barbershop.backend.payload.response.CommissionReport;
+import com.barbershop.backend.repository.AppointmentTypeRepository;
+import com.barbershop.backend.repository.CashCutRepository;
+import com.barbershop.backend.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-barber sales and commission for a period, computed with one grouped query
+ * over the hot and archived sale items instead of one query per barber.
+ *
+ * Each item earns the commission rate its service or product had when it was
+ * sold (or the shop default when that rate was not set), stored on the item by
+ * {@link #applyRates}, so editing a rate only changes future sales. Only
+ * COMPLETED sales count.
+ *
+ * A period that ends before the last cash cut is closed and its report never
+ * changes, so it is cached; only a sale of the period that commits late drops
+ * it.
+ */
+@Service
+public class CommissionReportService {
+
+    // Closed periods kept in memory, least recently used evicted first
+    private static final int MAX_CACHED_PERIODS = 256;
+
+    private static final String ITEMS_OF_PERIOD = "SELECT i.sale_id, i.barber_id, i.appointment_type_id, "
+            + "i.product_id, i.quantity, i.subtotal, i.commission_rate FROM %s i JOIN %s s ON s.id = i.sale_id "
+            + "WHERE s.date >= :start AND s.date < :end AND s.status = 'COMPLETED' AND i.barber_id IS NOT NULL";
+
+    private static final String REPORT_SQL = "SELECT x.barber_id, b.name AS barber_name, "
+            + "SUM(x.subtotal) AS total_sales, "
+            + "SUM(CASE WHEN x.product_id IS NULL THEN x.subtotal ELSE 0 END) AS service_sales, "
+            + "SUM(CASE WHEN x.product_id IS NOT NULL THEN x.subtotal ELSE 0 END) AS product_sales, "
+            + "SUM(x.quantity) AS item_count, COUNT(DISTINCT x.sale_id) AS sale_count, "
+            + "SUM(x.subtotal * x.commission_rate) AS commission "
+            + "FROM (" + String.format(ITEMS_OF_PERIOD, "sale_items", "sales")
+            + " UNION ALL " + String.format(ITEMS_OF_PERIOD, "sale_items_archive", "sales_archive") + ") x "
+            + "JOIN barbers b ON b.id = x.barber_id "
+            + "GROUP BY x.barber_id, b.name ORDER BY b.name";
+
+    @Value("${barbershop.commission.service-rate:0.40}")
+    private double serviceRate;
+
+    @Value("${barbershop.commission.product-rate:0.10}")
+    private double productRate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Autowired
+    private CashCutRepository cutRepository;
+
+    @Autowired
+    private AppointmentTypeRepository appointmentTypeRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final Map<String, CommissionReport> closedPeriods = Collections.synchronizedMap(
+            new LinkedHashMap<String, CommissionReport>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CommissionReport> eldest) {
+                    return size() > MAX_CACHED_PERIODS;
+                }
+            });
+
+    /**
+     * Report for [from, to], both days inclusive.
+     */
+    public CommissionReport report(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new RuntimeException("Error: 'to' must not be before 'from'.");
+        }
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+
+        boolean closed = cutRepository.findTopByOrderByTimestampDesc()
+                .map(CashCut::getTimestamp)
+                .map(lastCut -> !end.isAfter(lastCut))
+                .orElse(false);
+        if (!closed) {
+            return compute(from, to, false);
+        }
+
+        String key = from + "|" + to;
+        CommissionReport cached = closedPeriods.get(key);
+        if (cached == null) {
+            cached = compute(from, to, true);
+            closedPeriods.put(key, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Stores on every item the commission rate in force now: its product's rate
+     * for products, its service's otherwise, or the matching default. Items
+     * without a product count as services. Rates are read with one query per
+     * table, since the items may only carry the ids sent by the POS. Fails when
+     * an item names a product that does not exist.
+     */
+    public void applyRates(Collection<Sale> sales) {
+        Set<Long> typeIds = new HashSet<>();
+        Set<Long> productIds = new HashSet<>();
+        for (Sale sale : sales) {
+            for (SaleItem item : sale.getItems()) {
+                if (item.getProduct() != null) {
+                    productIds.add(item.getProduct().getId());
+                } else if (item.getService() != null) {
+                    typeIds.add(item.getService().getId());
+                }
+            }
+        }
+        Map<Long, Double> typeRates = new HashMap<>();
+        appointmentTypeRepository.findAllById(typeIds)
+                .forEach(type -> typeRates.put(type.getId(), type.getCommissionRate()));
+        Map<Long, Double> productRates = new HashMap<>();
+        productRepository.findAllById(productIds)
+                .forEach(product -> productRates.put(product.getId(), product.getCommissionRate()));
+
+        for (Sale sale : sales) {
+            for (SaleItem item : sale.getItems()) {
+                // Reported before the insert, instead of as a foreign key violation
+                if (item.getProduct() != null && !productRates.containsKey(item.getProduct().getId())) {
+                    throw new RuntimeException("Error: Product " + item.getProduct().getId() + " not found.");
+                }
+                Double rate = item.getProduct() != null ? productRates.get(item.getProduct().getId())
+                        : item.getService() != null ? typeRates.get(item.getService().getId())
+                        : null;
+                item.setCommissionRate(rate != null ? rate : item.getProduct() != null ? productRate : serviceRate);
+            }
+        }
+    }
+
+    /**
+     * Drops the cached reports whose period contains one of the days. Sales are
+     * stamped with the server time, but one stamped just before a cash cut can
+     * commit after the report of its period was cached.
+     */
+    public void salesRecorded(Collection<LocalDate> days) {
+        synchronized (closedPeriods) {
+            closedPeriods.keySet().removeIf(key -> {
+                String[] period = key.split("\\|");
+                LocalDate from = LocalDate.parse(period[0]);
+                LocalDate to = LocalDate.parse(period[1]);
+                return days.stream().anyMatch(day -> !day.isBefore(from) && !day.isAfter(to));
+            });
+        }
+    }
+
+    public static Double validRate(Double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new RuntimeException("Error: Commission rate must be between 0 and 1.");
+        }
+        return rate;
+    }
+
+    private CommissionReport compute(LocalDate from, LocalDate to, boolean closed) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(from.atStartOfDay()))
+                .addValue("end", Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+
+        List<CommissionLine> lines = jdbc.query(REPORT_SQL, params, (rs, n) -> new CommissionLine(
+                rs.getLong("barber_id"),
+                rs.getString("barber_name"),
+                round(rs.getDouble("total_sales")),
+                round(rs.getDouble("service_sales")),
+                round(rs.getDouble("product_sales")),
+                rs.getLong("item_count"),
+                rs.getLong("sale_count"),
+                round(rs.getDouble("commission"))));
+
+        double totalSales = lines.stream().mapToDouble(CommissionLine::getTotalSales).sum();
+        double totalCommission = lines.stream().mapToDouble(CommissionLine::getCommission).sum();
+        return new CommissionReport(from, to, closed, round(totalSales), round(totalCommission),
+                Collections.unmodifiableList(lines));
+    }
+
+    private static double round(double amount) {
+        return Math.round(amount * 100) / 100.0;
+    }
+}
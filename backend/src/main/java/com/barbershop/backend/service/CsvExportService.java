@@ -0,0 +1,168 @@
+package com.barbershop.backend.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * CSV exports of sales and appointments (hot and archived) for the accountant.
+ *
+ * Rows are read through a forward-only cursor with a fixed fetch size, inside a
+ * read-only transaction (PostgreSQL only honours the fetch size without
+ * autocommit), and written to the response as they arrive. Nothing is collected
+ * in memory, so a five-year export costs the same heap as a one-day export.
+ */
+@Service
+public class CsvExportService {
+
+    // Rows the driver holds at a time
+    private static final int FETCH_SIZE = 500;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String SALE_LINES = "SELECT s.id AS venta, s.date AS fecha, "
+            + "s.payment_method AS metodo_pago, s.status AS estado, s.total_amount AS total_venta, "
+            + "COALESCE(c.name, s.guest_name) AS cliente, cb.name AS cobrado_por, i.item_name AS item, "
+            + "i.quantity AS cantidad, i.price AS precio, i.subtotal AS subtotal, b.name AS barbero, "
+            + "t.name AS servicio, p.name AS producto, i.id AS item_id "
+            + "FROM %s s JOIN %s i ON i.sale_id = s.id "
+            + "LEFT JOIN users c ON c.id = s.user_id "
+            + "LEFT JOIN users cb ON cb.id = s.created_by_user_id "
+            + "LEFT JOIN barbers b ON b.id = i.barber_id "
+            + "LEFT JOIN appointment_types t ON t.id = i.appointment_type_id "
+            + "LEFT JOIN products p ON p.id = i.product_id "
+            + "WHERE s.date >= :start AND s.date < :end";
+
+    private static final String SALES_SQL = "SELECT x.venta, x.fecha, x.metodo_pago, x.estado, x.total_venta, "
+            + "x.cliente, x.cobrado_por, x.item, x.cantidad, x.precio, x.subtotal, x.barbero, x.servicio, x.producto "
+            + "FROM (" + String.format(SALE_LINES, "sales", "sale_items")
+            + " UNION ALL " + String.format(SALE_LINES, "sales_archive", "sale_items_archive") + ") x "
+            + "ORDER BY x.fecha, x.venta, x.item_id";
+
+    private static final String APPOINTMENTS_OF_PERIOD = "SELECT a.id AS cita, a.start_time AS inicio, "
+            + "a.end_time AS fin, a.status AS estado, b.name AS barbero, t.name AS servicio, t.price AS precio, "
+            + "COALESCE(u.name, a.guest_name) AS cliente, COALESCE(u.email, a.guest_email) AS email, "
+            + "COALESCE(u.phone, a.guest_phone) AS telefono, a.creation_source AS origen, "
+            + "a.created_by AS creada_por, a.created_at AS creada, a.notes AS notas "
+            + "FROM %s a "
+            + "LEFT JOIN barbers b ON b.id = a.barber_id "
+            + "LEFT JOIN appointment_types t ON t.id = a.appointment_type_id "
+            + "LEFT JOIN users u ON u.id = a.user_id "
+            + "WHERE a.start_time >= :start AND a.start_time < :end";
+
+    private static final String APPOINTMENTS_SQL = "SELECT * FROM ("
+            + String.format(APPOINTMENTS_OF_PERIOD, "appointments")
+            + " UNION ALL " + String.format(APPOINTMENTS_OF_PERIOD, "appointments_archive") + ") x "
+            + "ORDER BY x.inicio, x.cita";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Writes one line per sale item of the sales made in [from, to], both days inclusive.
+     */
+    public void exportSales(LocalDate from, LocalDate to, OutputStream out) {
+        export(SALES_SQL, from, to, out);
+    }
+
+    /**
+     * Writes one line per appointment starting in [from, to], both days inclusive.
+     */
+    public void exportAppointments(LocalDate from, LocalDate to, OutputStream out) {
+        export(APPOINTMENTS_SQL, from, to, out);
+    }
+
+    private void export(String sql, LocalDate from, LocalDate to, OutputStream out) {
+        if (to.isBefore(from)) {
+            throw new RuntimeException("Error: 'to' must not be before 'from'.");
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(from.atStartOfDay()))
+                .addValue("end", Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+
+        JdbcTemplate cursor = new JdbcTemplate(dataSource);
+        cursor.setFetchSize(FETCH_SIZE);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        readOnly.executeWithoutResult(tx -> new NamedParameterJdbcTemplate(cursor).query(sql, params,
+                (ResultSetExtractor<Void>) rs -> {
+                    try {
+                        // BOM so spreadsheet apps read the accents as UTF-8
+                        writer.write('\uFEFF');
+                        ResultSetMetaData meta = rs.getMetaData();
+                        int columns = meta.getColumnCount();
+                        for (int i = 1; i <= columns; i++) {
+                            writer.write(i > 1 ? "," : "");
+                            writer.write(meta.getColumnLabel(i).toLowerCase());
+                        }
+                        writer.write("\r\n");
+                        while (rs.next()) {
+                            for (int i = 1; i <= columns; i++) {
+                                writer.write(i > 1 ? "," : "");
+                                writer.write(format(rs.getObject(i)));
+                            }
+                            writer.write("\r\n");
+                        }
+                        writer.flush();
+                    } catch (IOException e) {
+                        // The client went away; stop reading the cursor
+                        throw new UncheckedIOException(e);
+                    }
+                    return null;
+                }));
+    }
+
+    private static String format(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime().format(DATE_TIME);
+        }
+        if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            return new BigDecimal(value.toString()).setScale(2, RoundingMode.HALF_UP).toPlainString();
+        }
+        if (value instanceof Number) {
+            return value.toString();
+        }
+        return quote(value.toString());
+    }
+
+    private static String quote(String text) {
+        // A leading =, +, - or @ would be run as a formula by spreadsheet apps
+        if (!text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
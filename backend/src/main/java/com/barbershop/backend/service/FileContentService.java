@@ -0,0 +1,69 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.model.DBFile;
+import com.barbershop.backend.payload.response.FileMetadata;
+import com.barbershop.backend.repository.DBFileRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Uploaded files: the metadata is a db_files row and the content a blob in the
+ * {@link BlobStore}, keyed by its SHA-256.
+ *
+ * Uploading bytes that are already stored adds no new blob, and uploading the
+ * same file again (same bytes, name and type) returns the existing row, so
+ * re-sending a photo costs neither disk nor a new URL.
+ */
+@Service
+public class FileContentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileContentService.class);
+
+    @Autowired
+    private DBFileRepository dbFileRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    public DBFile store(String fileName, String fileType, InputStream content) throws IOException {
+        StoredBlob blob = blobStore.put(content);
+        return dbFileRepository.findFirstByContentHashAndFileNameAndFileType(blob.getHash(), fileName, fileType)
+                .orElseGet(() -> dbFileRepository.save(new DBFile(fileName, fileType, blob.getHash(), blob.getSize())));
+    }
+
+    /**
+     * The metadata of a file whose content is available.
+     */
+    public Optional<FileMetadata> metadata(String id) {
+        Optional<FileMetadata> metadata = dbFileRepository.findMetadataById(id);
+        if (metadata.isPresent() && !blobStore.contains(metadata.get().getContentHash())) {
+            logger.error("Content of file {} ({}) is missing", id, metadata.get().getContentHash());
+            return Optional.empty();
+        }
+        return metadata;
+    }
+
+    /**
+     * The file holding the content, when the blob store keeps it on the local disk.
+     */
+    public Optional<Path> localPath(FileMetadata file) {
+        return blobStore.localPath(file.getContentHash());
+    }
+
+    /**
+     * Writes {@code length} bytes of the content starting at {@code offset}.
+     */
+    public void copy(FileMetadata file, long offset, long length, OutputStream out) throws IOException {
+        blobStore.transferTo(file.getContentHash(), offset, length, Channels.newChannel(out));
+        out.flush();
+    }
+}
@@ -0,0 +1,162 @@
+package com.barbershop.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps blobs as files under {@code barbershop.files.dir}, named after their
+ * hash and spread over two levels of directories (ab/cd/abcd...) so no
+ * directory grows too large.
+ *
+ * Content is first written to a temporary file while it is hashed, then moved
+ * into place atomically, so a reader never sees a partial blob. If the hash is
+ * already there the temporary file is simply dropped. Blobs are never
+ * modified, which is what lets several files share one.
+ *
+ * The directory is the only copy of files uploaded since V13, so it must live
+ * on a persistent volume (/data/files in the Docker image). Startup fails if it
+ * is not writable, and {@link BlobStoreCheck} fails it if blobs are missing.
+ */
+@Service
+public class FilesystemBlobStore implements BlobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilesystemBlobStore.class);
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Value("${barbershop.files.dir:./data/files}")
+    private String dir;
+
+    private Path root;
+
+    private Path incoming;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(dir).toAbsolutePath().normalize();
+        incoming = root.resolve("tmp");
+        try {
+            Files.createDirectories(incoming);
+            Files.delete(Files.createTempFile(incoming, "probe-", ".tmp"));
+        } catch (IOException e) {
+            throw new IllegalStateException("The blob store directory " + root + " is not writable. Set FILES_DIR "
+                    + "(barbershop.files.dir) to a writable directory on a persistent volume.", e);
+        }
+        logger.info("Blob store at {}", root);
+    }
+
+    @Override
+    public StoredBlob put(InputStream content) throws IOException {
+        Path temp = Files.createTempFile(incoming, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            long size = 0;
+            try (InputStream in = new DigestInputStream(content, digest);
+                    OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    out.write(buffer, 0, read);
+                    size += read;
+                }
+            }
+            String hash = toHex(digest.digest());
+            Path target = pathOf(hash);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // Someone stored the same bytes in the meantime
+                }
+            }
+            return new StoredBlob(hash, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public boolean contains(String hash) {
+        return isHash(hash) && Files.isRegularFile(pathOf(hash));
+    }
+
+    @Override
+    public InputStream open(String hash) throws IOException {
+        return Files.newInputStream(checkedPath(hash));
+    }
+
+    @Override
+    public void transferTo(String hash, long offset, long length, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(checkedPath(hash), StandardOpenOption.READ)) {
+            long position = offset;
+            long end = offset + length;
+            // transferTo may send less than asked for, so loop until the range is out
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String hash) {
+        return contains(hash) ? Optional.of(pathOf(hash)) : Optional.empty();
+    }
+
+    private Path checkedPath(String hash) {
+        if (!isHash(hash)) {
+            throw new IllegalArgumentException("Not a SHA-256 hash: " + hash);
+        }
+        return pathOf(hash);
+    }
+
+    private Path pathOf(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private static boolean isHash(String hash) {
+        return hash != null && HASH.matcher(hash).matches();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
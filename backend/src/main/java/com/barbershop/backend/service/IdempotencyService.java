@@ -0,0 +1,287 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.exception.IdempotencyConflictException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Replays the stored response of a POST that is retried with the same
+ * Idempotency-Key, so a flaky connection never creates the same thing twice.
+ *
+ * Keys live in a bounded in-memory map ordered by insertion; with a fixed TTL
+ * that is also expiry order, so lookups are O(1) and expired entries are dropped
+ * from the head as new ones arrive. With {@code barbershop.idempotency.shared}
+ * the idempotency_keys table is the source of truth between nodes: a key is
+ * claimed there before the request runs, and the response is written in the
+ * request's own transaction.
+ *
+ * A response is only kept when the request's transaction commits; otherwise the
+ * key is released and the client can retry.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 200;
+
+    // A claim older than this belongs to a request that died without releasing it
+    private static final long CLAIM_TIMEOUT_MS = 2 * 60 * 1000;
+
+    @Value("${barbershop.idempotency.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${barbershop.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${barbershop.idempotency.shared:false}")
+    private boolean shared;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Insertion order == expiry order; guarded by itself
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Claims {@code key} for the current user within {@code scope}. The returned
+     * claim either carries the stored response to replay, or must be completed
+     * with {@link Claim#succeeded(int, Object)} once the request is done. Must run
+     * inside the request's transaction, whose outcome decides what is kept.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Claim claim(String scope, String key) {
+        if (key.trim().isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new RuntimeException("Error: " + HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters.");
+        }
+        String id = scope + ":" + currentUser() + ":" + key;
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttlMinutes * 60 * 1000;
+
+        synchronized (entries) {
+            evict(now);
+            Entry entry = entries.get(id);
+            if (entry != null && entry.expiresAt > now) {
+                if (entry.body == null) {
+                    throw inProgress();
+                }
+                return new Claim(id, entry);
+            }
+            if (!shared) {
+                entries.put(id, new Entry(expiresAt, null, null));
+            }
+        }
+
+        if (shared) {
+            Entry stored = claimShared(id, now, expiresAt);
+            synchronized (entries) {
+                entries.put(id, stored != null ? stored : new Entry(expiresAt, null, null));
+            }
+            if (stored != null) {
+                return new Claim(id, stored);
+            }
+        }
+
+        Claim claim = new Claim(id, expiresAt);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                finish(claim, status == STATUS_COMMITTED);
+            }
+        });
+        return claim;
+    }
+
+    @Scheduled(fixedDelay = 10 * 60 * 1000)
+    public void purgeExpired() {
+        synchronized (entries) {
+            evict(System.currentTimeMillis());
+        }
+        if (shared) {
+            int purged = jdbcTemplate.update("DELETE FROM idempotency_keys WHERE expires_at < ?",
+                    new Timestamp(System.currentTimeMillis()));
+            if (purged > 0) {
+                logger.info("Purged {} expired idempotency keys", purged);
+            }
+        }
+    }
+
+    // Inserting the key is the claim; the row must be visible to other nodes before the request runs
+    private Entry claimShared(String id, long now, long expiresAt) {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            try {
+                requiresNew().executeWithoutResult(tx -> jdbcTemplate.update(
+                        "INSERT INTO idempotency_keys (idempotency_key, created_at, expires_at) VALUES (?, ?, ?)",
+                        id, new Timestamp(now), new Timestamp(expiresAt)));
+                return null;
+            } catch (DuplicateKeyException e) {
+                List<Object[]> rows = requiresNew().execute(tx -> jdbcTemplate.query(
+                        "SELECT status_code, response_body, created_at, expires_at FROM idempotency_keys "
+                                + "WHERE idempotency_key = ?",
+                        (rs, n) -> new Object[] { rs.getObject(1), rs.getString(2), rs.getTimestamp(3),
+                                rs.getTimestamp(4) },
+                        id));
+                if (rows == null || rows.isEmpty()) {
+                    continue; // Released in between; claim again
+                }
+                Object[] row = rows.get(0);
+                Timestamp createdAt = (Timestamp) row[2];
+                long rowExpiresAt = ((Timestamp) row[3]).getTime();
+                boolean abandoned = row[0] == null && createdAt.getTime() < now - CLAIM_TIMEOUT_MS;
+                if (rowExpiresAt <= now || abandoned) {
+                    requiresNew().executeWithoutResult(tx -> jdbcTemplate.update(
+                            "DELETE FROM idempotency_keys WHERE idempotency_key = ? AND created_at = ?",
+                            id, createdAt));
+                    continue;
+                }
+                if (row[0] == null) {
+                    throw inProgress();
+                }
+                return new Entry(rowExpiresAt, ((Number) row[0]).intValue(), (String) row[1]);
+            }
+        }
+        throw inProgress();
+    }
+
+    private void finish(Claim claim, boolean committed) {
+        synchronized (entries) {
+            if (committed && claim.body != null) {
+                entries.put(claim.id, new Entry(claim.expiresAt, claim.statusCode, claim.body));
+            } else {
+                entries.remove(claim.id);
+            }
+        }
+        if (shared && !(committed && claim.body != null)) {
+            requiresNew().executeWithoutResult(tx -> jdbcTemplate.update(
+                    "DELETE FROM idempotency_keys WHERE idempotency_key = ? AND status_code IS NULL", claim.id));
+        }
+    }
+
+    // Drops expired entries from the head, then the oldest ones while over capacity
+    private void evict(long now) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry eldest = it.next();
+            if (eldest.expiresAt > now && entries.size() <= maxEntries) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    private TransactionTemplate requiresNew() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : "anonymous";
+    }
+
+    private static IdempotencyConflictException inProgress() {
+        return new IdempotencyConflictException(
+                "Error: A request with this " + HEADER + " is still being processed. Retry shortly.");
+    }
+
+    private static final class Entry {
+        private final long expiresAt;
+        private final Integer statusCode; // null while the request is in progress
+        private final String body;
+
+        private Entry(long expiresAt, Integer statusCode, String body) {
+            this.expiresAt = expiresAt;
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Outcome of {@link #claim(String, String)}: a replay of the stored response,
+     * or a fresh claim the caller completes when its request succeeds.
+     */
+    public final class Claim {
+        private final String id;
+        private final long expiresAt;
+        private final boolean replay;
+        private Integer statusCode;
+        private String body;
+
+        private Claim(String id, long expiresAt) {
+            this.id = id;
+            this.expiresAt = expiresAt;
+            this.replay = false;
+        }
+
+        private Claim(String id, Entry stored) {
+            this.id = id;
+            this.expiresAt = stored.expiresAt;
+            this.replay = true;
+            this.statusCode = stored.statusCode;
+            this.body = stored.body;
+        }
+
+        public boolean isReplay() {
+            return replay;
+        }
+
+        public ResponseEntity<String> replay() {
+            return ResponseEntity.status(statusCode)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(REPLAYED_HEADER, "true")
+                    .body(body);
+        }
+
+        /**
+         * Records the response to replay for this key. It is kept once the
+         * surrounding transaction commits.
+         */
+        public void succeeded(int statusCode, Object response) {
+            try {
+                this.body = objectMapper.writeValueAsString(response);
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException("Error: Could not store the response for " + HEADER + ".", e);
+            }
+            this.statusCode = statusCode;
+            if (shared) {
+                // Same transaction as the request: the response exists exactly when its effects do
+                jdbcTemplate.update("UPDATE idempotency_keys SET status_code = ?, response_body = ? "
+                        + "WHERE idempotency_key = ?", statusCode, body, id);
+            }
+        }
+    }
+}
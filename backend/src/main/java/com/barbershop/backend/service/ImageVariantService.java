@@ -0,0 +1,449 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.model.DBFile;
+import com.barbershop.backend.payload.response.FileMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Resized, recompressed copies of uploaded images, so pages that show a photo
+ * small do not download the camera original: THUMB for avatars and lists, CARD
+ * for product and barber cards, FULL for a detail view. Each fits in a square
+ * of its size and keeps the aspect ratio.
+ *
+ * Variants are made on a small worker pool with a bounded queue, right after
+ * the upload and otherwise in the background after the first request for one,
+ * which is served the original meanwhile; no request thread waits for a decode.
+ * The image is decoded once for all of them, subsampled by the reader to about
+ * the largest size needed, and turned upright from its EXIF orientation, since
+ * the re-encoded variants carry no metadata. They are stored in the BlobStore
+ * like the original and listed in file_variants, so each is made only once.
+ */
+@Service
+public class ImageVariantService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantService.class);
+
+    public enum Variant {
+        THUMB(160),
+        CARD(480),
+        FULL(1600);
+
+        // Longest side, in pixels
+        private final int maxSize;
+
+        Variant(int maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    private static final float JPEG_QUALITY = 0.82f;
+
+    // Not decoded at all when even subsampled it is above this: 50 MP is already 200 MB of pixels
+    private static final long MAX_PIXELS = 50_000_000L;
+
+    @Value("${barbershop.images.workers:2}")
+    private int workers;
+
+    @Value("${barbershop.images.queue-size:50}")
+    private int queueSize;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    private ThreadPoolExecutor pool;
+
+    // One job per file at a time; concurrent requests for its variants wait on the same job
+    private final ConcurrentMap<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger count = new AtomicInteger();
+        pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        pool.shutdownNow();
+    }
+
+    public static Variant parse(String name) {
+        try {
+            return Variant.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Error: Unknown image variant '" + name + "'. Use thumb, card or full.");
+        }
+    }
+
+    /**
+     * Queues the variants of a new upload. When the queue is full they are left
+     * for the first request.
+     */
+    public void generateLater(DBFile file) {
+        if (!isImage(file.getFileType())) {
+            return;
+        }
+        try {
+            submit(new FileMetadata(file.getId(), file.getFileName(), file.getFileType(), file.getContentHash(),
+                    file.getFileSize(), file.getCreatedAt()));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Image queue full, variants of {} left for later", file.getId());
+        }
+    }
+
+    /**
+     * The variant of a file if it is already made. Files that are not images are
+     * their own variants. Otherwise it is queued and this returns empty at once,
+     * so the caller serves the original until a later request finds the variant.
+     */
+    public Optional<FileMetadata> find(FileMetadata file, Variant variant) {
+        if (!isImage(file.getFileType())) {
+            return Optional.of(file);
+        }
+        Optional<FileMetadata> stored = load(file, variant);
+        if (!stored.isPresent()) {
+            try {
+                submit(file);
+            } catch (RejectedExecutionException e) {
+                logger.warn("Image queue full, variants of {} left for a later request", file.getId());
+            }
+        }
+        return stored;
+    }
+
+    private void submit(FileMetadata file) {
+        CompletableFuture<Void> job = inFlight.computeIfAbsent(file.getId(),
+                id -> CompletableFuture.runAsync(() -> generate(file), pool));
+        job.whenComplete((result, error) -> {
+            inFlight.remove(file.getId(), job);
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                logger.warn("Variants of {} failed", file.getId(), cause);
+            }
+        });
+    }
+
+    private void generate(FileMetadata file) {
+        Set<Variant> missing = EnumSet.allOf(Variant.class);
+        missing.removeAll(jdbc.queryForList("SELECT variant FROM file_variants WHERE file_id = :id",
+                new MapSqlParameterSource("id", file.getId()), String.class)
+                .stream().map(Variant::valueOf).collect(Collectors.toSet()));
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        int largest = missing.stream().mapToInt(variant -> variant.maxSize).max().getAsInt();
+        BufferedImage image;
+        try (InputStream in = blobStore.open(file.getContentHash());
+                ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+            image = decode(stream, file, largest);
+            if (image != null) {
+                try (InputStream header = blobStore.open(file.getContentHash())) {
+                    image = orient(image, exifOrientation(header));
+                }
+            }
+        } catch (IOException e) {
+            // Not recorded, so the next request tries again
+            throw new UncheckedIOException(e);
+        }
+
+        for (Variant variant : missing) {
+            if (image == null) {
+                // The original stands in for every variant, and is not decoded again
+                save(file, variant, file.getContentHash(), file.getFileType(), file.getFileSize());
+                continue;
+            }
+            BufferedImage resized = resize(image, variant.maxSize);
+            boolean alpha = resized.getColorModel().hasAlpha();
+            byte[] encoded = alpha ? encodePng(resized) : encodeJpeg(resized);
+            if (encoded.length >= file.getFileSize()) {
+                save(file, variant, file.getContentHash(), file.getFileType(), file.getFileSize());
+                continue;
+            }
+            try {
+                StoredBlob blob = blobStore.put(new ByteArrayInputStream(encoded));
+                save(file, variant, blob.getHash(), alpha ? "image/png" : "image/jpeg", blob.getSize());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Decodes the image, letting the reader keep only every n-th pixel of every
+     * n-th row when that still leaves at least {@code maxSize} on the longest
+     * side: a 12 MP photo needed for a 1600 px variant is decoded at 2000 px, a
+     * quarter of the memory and time. Null when ImageIO cannot read the image,
+     * or it is too large to decode safely.
+     */
+    private static BufferedImage decode(ImageInputStream stream, FileMetadata file, int maxSize) throws IOException {
+        // Resizing an animated GIF would keep only its first frame
+        if (stream == null || file.getFileType().toLowerCase().contains("gif")) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(stream, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            int step = Math.max(1, Math.max(width, height) / maxSize);
+            long pixels = (long) ceilDiv(width, step) * ceilDiv(height, step);
+            if (pixels > MAX_PIXELS) {
+                logger.info("Image {} has {} pixels, not resizing it", file.getId(), pixels);
+                return null;
+            }
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(step, step, 0, 0);
+            return reader.read(0, param);
+        } catch (IIOException | RuntimeException e) {
+            logger.warn("Cannot decode image {}: {}", file.getId(), e.getMessage());
+            return null;
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    /**
+     * The EXIF orientation (1 to 8) of a JPEG, read from the tag 0x0112 of the
+     * first image directory in its APP1 segment; 1 (upright) for anything else.
+     */
+    private static int exifOrientation(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        try {
+            if (data.readUnsignedShort() != 0xFFD8) {
+                return 1;
+            }
+            while (true) {
+                int marker = data.readUnsignedShort();
+                // Start of scan: the image data follows, there are no more headers
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA) {
+                    return 1;
+                }
+                int length = data.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return 1;
+                }
+                byte[] segment = new byte[length];
+                data.readFully(segment);
+                if (marker == 0xFFE1 && length > 14 && new String(segment, 0, 6, StandardCharsets.ISO_8859_1)
+                        .equals("Exif\0\0")) {
+                    return orientationOf(ByteBuffer.wrap(segment, 6, length - 6).slice());
+                }
+            }
+        } catch (EOFException e) {
+            return 1;
+        }
+    }
+
+    private static int orientationOf(ByteBuffer tiff) {
+        try {
+            tiff.order(tiff.getShort(0) == 0x4949 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            int directory = tiff.getInt(4);
+            int entries = tiff.getShort(directory) & 0xFFFF;
+            for (int i = 0; i < entries; i++) {
+                int entry = directory + 2 + i * 12;
+                if ((tiff.getShort(entry) & 0xFFFF) == 0x0112) {
+                    int orientation = tiff.getShort(entry + 8) & 0xFFFF;
+                    return orientation >= 1 && orientation <= 8 ? orientation : 1;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Truncated or malformed; leave the image as stored
+        }
+        return 1;
+    }
+
+    /**
+     * Turns the image upright: orientations 2 to 8 are the mirrorings and
+     * quarter turns of the stored pixels, and 5 to 8 swap width and height.
+     */
+    private static BufferedImage orient(BufferedImage image, int orientation) {
+        if (orientation == 1) {
+            return image;
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform transform;
+        switch (orientation) {
+            case 2: transform = new AffineTransform(-1, 0, 0, 1, w, 0); break;
+            case 3: transform = new AffineTransform(-1, 0, 0, -1, w, h); break;
+            case 4: transform = new AffineTransform(1, 0, 0, -1, 0, h); break;
+            case 5: transform = new AffineTransform(0, 1, 1, 0, 0, 0); break;
+            case 6: transform = new AffineTransform(0, 1, -1, 0, h, 0); break;
+            case 7: transform = new AffineTransform(0, -1, -1, 0, h, w); break;
+            default: transform = new AffineTransform(0, -1, 1, 0, 0, w); break;
+        }
+        boolean swap = orientation >= 5;
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage target = new BufferedImage(swap ? h : w, swap ? w : h, type);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static BufferedImage resize(BufferedImage image, int maxSize) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean alpha = image.getColorModel().hasAlpha();
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        if (width <= maxSize && height <= maxSize) {
+            // Only recompressed; the JPEG writer needs plain RGB
+            return image.getType() == type ? image : draw(image, width, height, type);
+        }
+        double scale = Math.min((double) maxSize / width, (double) maxSize / height);
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        // Halving step by step; a single bilinear pass from a photo to a thumbnail skips most pixels and aliases
+        BufferedImage current = image;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height, type);
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, int type) {
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodePng(BufferedImage image) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Optional<FileMetadata> load(FileMetadata file, Variant variant) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", file.getId())
+                .addValue("variant", variant.name());
+        Optional<FileMetadata> stored = jdbc.query("SELECT content_hash, file_type, file_size, created_at "
+                + "FROM file_variants WHERE file_id = :id AND variant = :variant", params,
+                rs -> rs.next()
+                        ? Optional.of(new FileMetadata(file.getId(), file.getFileName(), rs.getString(2),
+                                rs.getString(1), rs.getLong(3), rs.getTimestamp(4).toLocalDateTime()))
+                        : Optional.<FileMetadata>empty());
+        return stored.filter(metadata -> blobStore.contains(metadata.getContentHash()));
+    }
+
+    private void save(FileMetadata file, Variant variant, String hash, String type, long size) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", file.getId())
+                .addValue("variant", variant.name())
+                .addValue("hash", hash)
+                .addValue("type", type)
+                .addValue("size", size)
+                .addValue("now", new Timestamp(System.currentTimeMillis()));
+        try {
+            jdbc.update("INSERT INTO file_variants (file_id, variant, content_hash, file_type, file_size, created_at) "
+                    + "SELECT :id, :variant, :hash, :type, :size, :now "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM file_variants WHERE file_id = :id AND variant = :variant)",
+                    params);
+        } catch (DuplicateKeyException e) {
+            // Another node made it first; both are the same image
+        }
+    }
+
+    private static boolean isImage(String fileType) {
+        return fileType != null && fileType.toLowerCase().startsWith("image/");
+    }
+}
@@ -0,0 +1,168 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.exception.OutOfStockException;
+import com.barbershop.backend.model.Sale;
+import com.barbershop.backend.model.SaleItem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Product stock reservation for sales, and manual stock adjustments.
+ *
+ * Stock is taken with conditional UPDATEs ({@code stock = stock - n WHERE
+ * stock >= n}) sent as one JDBC batch per sale, inside the sale's transaction.
+ * The row lock of each UPDATE serializes concurrent sales of the same product, so
+ * two barbers selling the last unit cannot both succeed, and no stock is lost to
+ * a load-modify-save race. Products without a stock value are not tracked.
+ *
+ * When a sale leaves a product at or below the low-stock threshold a
+ * {@link LowStockEvent} goes to the outbox, so the alert runs after commit and
+ * off the request thread. The event is keyed by product and sale, so the same
+ * crossing is never alerted twice.
+ */
+@Service
+public class InventoryService {
+
+    private static final String RESERVE_SQL = "UPDATE products SET stock = stock - :quantity "
+            + "WHERE id = :id AND (stock IS NULL OR stock >= :quantity)";
+
+    private static final String ADJUST_SQL = "UPDATE products SET stock = COALESCE(stock, 0) + :delta "
+            + "WHERE id = :id AND COALESCE(stock, 0) + :delta >= 0";
+
+    @Value("${barbershop.inventory.low-stock-threshold:5}")
+    private int lowStockThreshold;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Autowired
+    private OutboxService outbox;
+
+    /**
+     * Takes the product units of the already saved sales from stock, or throws
+     * {@link OutOfStockException} (leaving the transaction to roll back) when any
+     * product does not have enough.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reserve(Collection<Sale> sales) {
+        // Units per product; sorted ids keep the row lock order stable between concurrent sales
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (Sale sale : sales) {
+            for (SaleItem item : sale.getItems()) {
+                if (item.getProduct() != null && item.getProduct().getId() != null) {
+                    int quantity = item.getQuantity() == null ? 1 : item.getQuantity();
+                    quantities.merge(item.getProduct().getId(), quantity, Integer::sum);
+                }
+            }
+        }
+        if (quantities.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>(quantities.keySet());
+        MapSqlParameterSource[] batch = ids.stream()
+                .map(id -> new MapSqlParameterSource().addValue("id", id).addValue("quantity", quantities.get(id)))
+                .toArray(MapSqlParameterSource[]::new);
+        int[] updated = jdbc.batchUpdate(RESERVE_SQL, batch);
+
+        Map<Long, Object[]> current = current(ids);
+        List<Map<String, Object>> shortages = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (updated[i] == 0) {
+                Object[] row = current.get(ids.get(i));
+                if (row == null) {
+                    // Not a shortage: answered as a bad request, not a 409
+                    throw new RuntimeException("Error: Product " + ids.get(i) + " not found.");
+                }
+                Map<String, Object> shortage = new HashMap<>();
+                shortage.put("productId", ids.get(i));
+                shortage.put("name", row[0]);
+                shortage.put("requested", quantities.get(ids.get(i)));
+                shortage.put("available", row[1] != null ? row[1] : 0);
+                shortages.add(shortage);
+            }
+        }
+        if (!shortages.isEmpty()) {
+            Map<String, Object> first = shortages.get(0);
+            throw new OutOfStockException("Error: Only " + first.get("available") + " units of '"
+                    + first.get("name") + "' are in stock, the sale needs " + first.get("requested") + ".",
+                    shortages);
+        }
+
+        for (Long id : ids) {
+            Object[] row = current.get(id);
+            if (row == null || row[1] == null) {
+                continue;
+            }
+            int stock = (Integer) row[1];
+            int before = stock + quantities.get(id);
+            // Only the sale that crosses the threshold reports it
+            if (stock <= lowStockThreshold && before > lowStockThreshold) {
+                outbox.enqueue(OutboxEvent.LOW_STOCK, "low-stock:" + id + ":" + crossingSale(sales, id, before),
+                        new LowStockEvent(id, (String) row[0], stock, lowStockThreshold));
+            }
+        }
+    }
+
+    /**
+     * Adds {@code delta} units (negative to remove) to the product's stock and
+     * returns the new stock. Sent as a difference in one UPDATE, so units sold
+     * while an admin had the product form open are not overwritten. A product
+     * without a stock value starts being tracked from zero.
+     */
+    @Transactional
+    public int adjust(Long productId, int delta) {
+        int updated = jdbc.update(ADJUST_SQL, new MapSqlParameterSource()
+                .addValue("id", productId)
+                .addValue("delta", delta));
+        Object[] row = current(Collections.singletonList(productId)).get(productId);
+        if (row == null) {
+            throw new RuntimeException("Error: Product not found.");
+        }
+        if (updated == 0) {
+            throw new RuntimeException("Error: Only " + (row[1] != null ? row[1] : 0) + " units of '" + row[0]
+                    + "' are in stock, cannot remove " + -delta + ".");
+        }
+        return (Integer) row[1];
+    }
+
+    // Id of the sale, in order, whose units took the product from stockBefore to the threshold
+    private Long crossingSale(Collection<Sale> sales, Long productId, int stockBefore) {
+        int stock = stockBefore;
+        for (Sale sale : sales) {
+            for (SaleItem item : sale.getItems()) {
+                if (item.getProduct() != null && productId.equals(item.getProduct().getId())) {
+                    stock -= item.getQuantity() == null ? 1 : item.getQuantity();
+                }
+            }
+            if (stock <= lowStockThreshold) {
+                return sale.getId();
+            }
+        }
+        return null;
+    }
+
+    // id -> {name, stock} after this transaction's updates
+    private Map<Long, Object[]> current(List<Long> ids) {
+        Map<Long, Object[]> rows = new HashMap<>();
+        jdbc.query("SELECT id, name, stock FROM products WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", ids),
+                rs -> {
+                    rows.put(rs.getLong(1), new Object[] { rs.getString(2), (Integer) rs.getObject(3) });
+                });
+        return rows;
+    }
+}
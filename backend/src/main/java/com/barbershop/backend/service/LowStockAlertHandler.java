@@ -0,0 +1,27 @@
+package com.barbershop.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports products that ran low on stock.
+ */
+@Component
+public class LowStockAlertHandler implements OutboxHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(LowStockAlertHandler.class);
+
+    @Override
+    public String eventType() {
+        return OutboxEvent.LOW_STOCK;
+    }
+
+    @Override
+    public void handle(OutboxEvent event) {
+        JsonNode stock = event.getPayload();
+        logger.warn("Low stock: '{}' (#{}) has {} left", stock.path("productName").asText(),
+                stock.path("productId").asLong(), stock.path("stock").asInt());
+    }
+}
@@ -0,0 +1,36 @@
+package com.barbershop.backend.service;
+
+/**
+ * Payload of the LOW_STOCK outbox event, written in the sale transaction when a
+ * product's stock drops to or below the low-stock threshold.
+ */
+public class LowStockEvent {
+
+    private final Long productId;
+    private final String productName;
+    private final int stock;
+    private final int threshold;
+
+    public LowStockEvent(Long productId, String productName, int stock, int threshold) {
+        this.productId = productId;
+        this.productName = productName;
+        this.stock = stock;
+        this.threshold = threshold;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+}
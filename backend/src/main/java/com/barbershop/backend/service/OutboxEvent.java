@@ -0,0 +1,58 @@
+package com.barbershop.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.LocalDateTime;
+
+/**
+ * An event read back from the outbox for delivery to its {@link OutboxHandler}s.
+ */
+public class OutboxEvent {
+
+    public static final String SALE_CREATED = "SALE_CREATED";
+    public static final String APPOINTMENT_BOOKED = "APPOINTMENT_BOOKED";
+    public static final String LOW_STOCK = "LOW_STOCK";
+
+    private final Long id;
+    private final String type;
+    private final String dedupeKey;
+    private final JsonNode payload;
+    private final int attempt;
+    private final LocalDateTime createdAt;
+
+    public OutboxEvent(Long id, String type, String dedupeKey, JsonNode payload, int attempt,
+            LocalDateTime createdAt) {
+        this.id = id;
+        this.type = type;
+        this.dedupeKey = dedupeKey;
+        this.payload = payload;
+        this.attempt = attempt;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    // Stable across redeliveries; handlers with external effects use it to skip repeats
+    public String getDedupeKey() {
+        return dedupeKey;
+    }
+
+    public JsonNode getPayload() {
+        return payload;
+    }
+
+    // 1 on the first delivery
+    public int getAttempt() {
+        return attempt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,16 @@
+package com.barbershop.backend.service;
+
+/**
+ * Receives the outbox events of one type, on the dispatcher thread after the
+ * transaction that produced them has committed.
+ *
+ * Delivery is at least once: an event is retried with back-off while any of its
+ * handlers throws, and may be delivered again if a node dies mid-delivery, so
+ * handlers must tolerate repeats (see {@link OutboxEvent#getDedupeKey()}).
+ */
+public interface OutboxHandler {
+
+    String eventType();
+
+    void handle(OutboxEvent event) throws Exception;
+}
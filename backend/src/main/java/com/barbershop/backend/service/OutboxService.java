@@ -0,0 +1,297 @@
+package com.barbershop.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox for the side effects of sales and bookings.
+ *
+ * Events are inserted into outbox_events in the caller's transaction, so they
+ * exist exactly when the sale or booking does, and the request only pays for
+ * one INSERT. A single dispatcher thread delivers them to the
+ * {@link OutboxHandler}s in batches: right after the producing transaction
+ * commits, and on a poll for retries and for events written by other nodes.
+ *
+ * A batch is claimed by leasing its rows (locked_until), so several nodes can
+ * drain the table without delivering the same event at the same time. A failed
+ * event is retried with exponential back-off until it runs out of attempts and
+ * is left DEAD for inspection. Delivered events are kept for a while so their
+ * dedupe keys keep rejecting duplicates.
+ */
+@Service
+public class OutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxService.class);
+
+    private static final String INSERT_SQL = "INSERT INTO outbox_events "
+            + "(event_type, dedupe_key, payload, status, attempts, created_at, next_attempt_at) "
+            + "SELECT :type, :key, :payload, 'PENDING', 0, :now, :now "
+            + "WHERE NOT EXISTS (SELECT 1 FROM outbox_events WHERE dedupe_key = :key)";
+
+    private static final String CLAIM_SQL = "UPDATE outbox_events SET locked_until = :lease, attempts = attempts + 1 "
+            + "WHERE id = :id AND status = 'PENDING' AND (locked_until IS NULL OR locked_until < :now)";
+
+    // Long enough for any handler; a node that dies mid-batch releases its events when it expires
+    private static final long LEASE_MS = 5 * 60 * 1000;
+    private static final long BASE_BACKOFF_MS = 5 * 1000;
+    private static final long MAX_BACKOFF_MS = 60 * 60 * 1000;
+    private static final int MAX_BATCHES_PER_RUN = 50;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    @Value("${barbershop.outbox.poll-ms:5000}")
+    private long pollMs;
+
+    @Value("${barbershop.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${barbershop.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${barbershop.outbox.retention-days:7}")
+    private int retentionDays;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private List<OutboxHandler> handlers = Collections.emptyList();
+
+    private Map<String, List<OutboxHandler>> handlersByType;
+
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "outbox-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // A wake-up is already queued on the dispatcher
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+
+    @PostConstruct
+    public void start() {
+        handlersByType = handlers.stream().collect(Collectors.groupingBy(OutboxHandler::eventType));
+        dispatcher.scheduleWithFixedDelay(this::drainSafely, pollMs, pollMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * Stores one event in the current transaction. An event whose dedupe key is
+     * already in the outbox is ignored.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String type, String dedupeKey, Object payload) {
+        enqueueAll(type, Collections.singletonMap(dedupeKey, payload));
+    }
+
+    /**
+     * Stores one event per entry of {@code payloads} (dedupe key to payload) with a
+     * single JDBC batch.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueAll(String type, Map<String, ?> payloads) {
+        if (payloads.isEmpty()) {
+            return;
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        MapSqlParameterSource[] batch = payloads.entrySet().stream()
+                .map(e -> new MapSqlParameterSource()
+                        .addValue("type", type)
+                        .addValue("key", e.getKey())
+                        .addValue("payload", toJson(e.getValue()))
+                        .addValue("now", now))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbc.batchUpdate(INSERT_SQL, batch);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                wakeUp();
+            }
+        });
+    }
+
+    /**
+     * Delivers every due event, batch by batch. Returns the number of events handled.
+     */
+    public int drain() {
+        int handled = 0;
+        for (int run = 0; run < MAX_BATCHES_PER_RUN; run++) {
+            Timestamp lease = new Timestamp(System.currentTimeMillis() + LEASE_MS);
+            List<OutboxEvent> batch = claim(lease);
+            if (batch.isEmpty()) {
+                break;
+            }
+            deliver(batch, lease);
+            handled += batch.size();
+            if (batch.size() < batchSize) {
+                break;
+            }
+        }
+        return handled;
+    }
+
+    @Scheduled(cron = "${barbershop.outbox.purge-cron:0 45 3 * * *}")
+    public void purgeDelivered() {
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - retentionDays * 24L * 60 * 60 * 1000);
+        int purged = jdbc.update("DELETE FROM outbox_events WHERE status = 'DONE' AND processed_at < :cutoff",
+                new MapSqlParameterSource("cutoff", cutoff));
+        if (purged > 0) {
+            logger.info("Purged {} delivered outbox events", purged);
+        }
+    }
+
+    private void wakeUp() {
+        if (wakeUpPending.compareAndSet(false, true)) {
+            dispatcher.execute(() -> {
+                wakeUpPending.set(false);
+                drainSafely();
+            });
+        }
+    }
+
+    private void drainSafely() {
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            // Keep the dispatcher alive; the next poll tries again
+            logger.error("Outbox dispatch failed", e);
+        }
+    }
+
+    // Leases the oldest due events; the conditional UPDATE decides which ones this node got
+    private List<OutboxEvent> claim(Timestamp lease) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("now", new Timestamp(System.currentTimeMillis()))
+                .addValue("lease", lease);
+        return transactionTemplate.execute(tx -> {
+            List<Long> due = jdbc.queryForList("SELECT id FROM outbox_events "
+                    + "WHERE status = 'PENDING' AND next_attempt_at <= :now "
+                    + "AND (locked_until IS NULL OR locked_until < :now) "
+                    + "ORDER BY id FETCH FIRST " + batchSize + " ROWS ONLY", params, Long.class);
+            if (due.isEmpty()) {
+                return Collections.<OutboxEvent>emptyList();
+            }
+            MapSqlParameterSource[] claims = due.stream()
+                    .map(id -> new MapSqlParameterSource(params.getValues()).addValue("id", id))
+                    .toArray(MapSqlParameterSource[]::new);
+            int[] updated = jdbc.batchUpdate(CLAIM_SQL, claims);
+            List<Long> claimed = new ArrayList<>();
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] > 0) {
+                    claimed.add(due.get(i));
+                }
+            }
+            if (claimed.isEmpty()) {
+                return Collections.<OutboxEvent>emptyList();
+            }
+            return jdbc.query("SELECT id, event_type, dedupe_key, payload, attempts, created_at "
+                    + "FROM outbox_events WHERE id IN (:ids) ORDER BY id",
+                    new MapSqlParameterSource("ids", claimed),
+                    (rs, n) -> new OutboxEvent(rs.getLong(1), rs.getString(2), rs.getString(3),
+                            readJson(rs.getString(4)), rs.getInt(5), rs.getTimestamp(6).toLocalDateTime()));
+        });
+    }
+
+    private void deliver(List<OutboxEvent> batch, Timestamp lease) {
+        List<MapSqlParameterSource> done = new ArrayList<>();
+        List<MapSqlParameterSource> failed = new ArrayList<>();
+        for (OutboxEvent event : batch) {
+            long now = System.currentTimeMillis();
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("id", event.getId())
+                    .addValue("lease", lease)
+                    .addValue("now", new Timestamp(now));
+            try {
+                // Events nobody subscribes to are simply marked delivered
+                for (OutboxHandler handler : handlersByType.getOrDefault(event.getType(),
+                        Collections.emptyList())) {
+                    handler.handle(event);
+                }
+                done.add(params);
+            } catch (Exception e) {
+                boolean dead = event.getAttempt() >= maxAttempts;
+                String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                logger.warn("Outbox event {} {} failed (attempt {}{}): {}", event.getType(), event.getDedupeKey(),
+                        event.getAttempt(), dead ? ", giving up" : "", error);
+                failed.add(params
+                        .addValue("status", dead ? "DEAD" : "PENDING")
+                        .addValue("next", new Timestamp(now + backoff(event.getAttempt())))
+                        .addValue("error", error.length() > MAX_ERROR_LENGTH
+                                ? error.substring(0, MAX_ERROR_LENGTH) : error));
+            }
+        }
+        // Only while the lease is ours; once it expired another node owns the event
+        transactionTemplate.executeWithoutResult(tx -> {
+            if (!done.isEmpty()) {
+                jdbc.batchUpdate("UPDATE outbox_events SET status = 'DONE', processed_at = :now, "
+                        + "locked_until = NULL, last_error = NULL WHERE id = :id AND locked_until = :lease",
+                        done.toArray(new MapSqlParameterSource[0]));
+            }
+            if (!failed.isEmpty()) {
+                jdbc.batchUpdate("UPDATE outbox_events SET status = :status, next_attempt_at = :next, "
+                        + "locked_until = NULL, last_error = :error WHERE id = :id AND locked_until = :lease",
+                        failed.toArray(new MapSqlParameterSource[0]));
+            }
+        });
+    }
+
+    // 5s, 10s, 20s, ... capped at an hour, with jitter so failures do not retry in lockstep
+    private static long backoff(int attempt) {
+        long delay = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempt - 1, 20));
+        return delay + ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error: Could not serialize the outbox event.", e);
+        }
+    }
+
+    private JsonNode readJson(String payload) {
+        try {
+            return objectMapper.readTree(payload);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error: Could not read the outbox event.", e);
+        }
+    }
+}
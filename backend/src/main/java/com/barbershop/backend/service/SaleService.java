@@ -0,0 +1,418 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.model.AppointmentType;
+import com.barbershop.backend.model.Barber;
+import com.barbershop.backend.model.Product;
+import com.barbershop.backend.model.Sale;
+import com.barbershop.backend.model.SaleItem;
+import com.barbershop.backend.model.User;
+import com.barbershop.backend.payload.response.SaleBatchResponse;
+import com.barbershop.backend.repository.AppointmentTypeRepository;
+import com.barbershop.backend.repository.BarberRepository;
+import com.barbershop.backend.repository.ProductRepository;
+import com.barbershop.backend.repository.SaleRepository;
+import com.barbershop.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Creates POS sales: fills in what the tablets leave out (item names, quantities,
+ * subtotals, total), fixes the commission rate of each item, and records every sale in the cash ledger, the daily
+ * revenue rollup and the outbox (SALE_CREATED) in the same transaction that
+ * saves it. A sale is dated by the server when it arrives; the time the tablet
+ * recorded it is kept in clientDate.
+ *
+ * Batches of sales queued offline are validated in one pass, loading the
+ * referenced clients, barbers, services and products with one query per table,
+ * and the valid ones are inserted together. Sale and SaleItem take their ids
+ * from pooled sequences, so Hibernate sends those INSERTs as JDBC batches.
+ *
+ * Every sale of a batch carries a clientRef chosen by the POS, unique in the
+ * sales table. A batch sent again after a lost response finds its sales by
+ * those references and reports them as saved instead of inserting them again,
+ * also when the two copies race.
+ */
+@Service
+public class SaleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SaleService.class);
+
+    @Value("${barbershop.pos.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BarberRepository barberRepository;
+
+    @Autowired
+    private AppointmentTypeRepository appointmentTypeRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CashLedgerService ledgerService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private SalesRollupService rollupService;
+
+    @Autowired
+    private OutboxService outbox;
+
+    @Autowired
+    private CommissionReportService commissionReports;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Completes the sale and its items in place. Returns the reason the sale
+     * cannot be saved, or null when it is valid.
+     */
+    public String normalize(Sale sale, User createdBy) {
+        if (sale == null) {
+            return "La venta está vacía.";
+        }
+        if (createdBy != null) {
+            sale.setCreatedBy(createdBy);
+        }
+        // The server's clock decides the register period and the reports a sale belongs
+        // to; the time the tablet recorded it (maybe offline, days ago) is only kept
+        sale.setClientDate(sale.getDate());
+        sale.setDate(LocalDateTime.now());
+        // A POS sale is always recorded as completed: the cash ledger counts every sale while
+        // the rollup and commission reports only count COMPLETED ones, so they must agree
+        sale.setStatus("COMPLETED");
+        if (sale.getPaymentMethod() == null || sale.getPaymentMethod().trim().isEmpty()) {
+            return "La venta no tiene método de pago.";
+        }
+        if (sale.getItems() == null || sale.getItems().isEmpty()) {
+            return "La venta no tiene ítems.";
+        }
+
+        double calculatedTotal = 0;
+        for (SaleItem item : sale.getItems()) {
+            if (item == null) {
+                return "La venta tiene un ítem vacío.";
+            }
+            // Link items to sale (bidirectional)
+            item.setSale(sale);
+
+            // Robust fallback for missing itemName
+            if (item.getItemName() == null || item.getItemName().trim().isEmpty()) {
+                if (item.getService() != null) {
+                    item.setItemName("Servicio");
+                } else if (item.getProduct() != null) {
+                    item.setItemName("Producto");
+                } else {
+                    item.setItemName("Ítem Varios");
+                }
+            }
+
+            // Mandatory field validation for persistence robustness
+            if (item.getPrice() == null)
+                item.setPrice(0.0);
+            if (item.getQuantity() == null)
+                item.setQuantity(1);
+            if (item.getSubtotal() == null) {
+                item.setSubtotal(item.getPrice() * item.getQuantity());
+            }
+
+            calculatedTotal += item.getSubtotal();
+        }
+
+        // Ensure total matches items
+        if (sale.getTotalAmount() == null || sale.getTotalAmount() == 0) {
+            sale.setTotalAmount(calculatedTotal);
+        }
+        return null;
+    }
+
+    /**
+     * Saves an already normalized sale, takes the sold products from stock and adds
+     * it to the ledger and the daily rollup.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Sale create(Sale sale) {
+        commissionReports.applyRates(Collections.singletonList(sale));
+        // Saved first so a low-stock alert can be keyed by the sale that caused it
+        Sale saved = saleRepository.saveAndFlush(sale);
+        inventoryService.reserve(Collections.singletonList(saved));
+        evictReportsOnCommit(Collections.singletonList(saved));
+        ledgerService.recordSale(saved);
+        rollupService.record(Collections.singletonList(saved));
+        outbox.enqueue(OutboxEvent.SALE_CREATED, createdKey(saved), createdPayload(saved));
+        return saved;
+    }
+
+    /**
+     * Saves every valid sale of the batch and reports each one by its position.
+     * Sales whose clientRef is already recorded are reported with the existing
+     * id. The rest are committed together; if that fails (e.g. a product runs
+     * out, or a replay of the batch got there first), each one is retried in its
+     * own transaction so only the offending sales are reported as failed.
+     */
+    public SaleBatchResponse createBatch(List<Sale> sales, User createdBy) {
+        if (sales == null || sales.isEmpty()) {
+            throw new RuntimeException("Error: The batch has no sales.");
+        }
+        if (sales.size() > maxBatchSize) {
+            throw new RuntimeException("Error: A batch can hold at most " + maxBatchSize + " sales.");
+        }
+
+        SaleBatchResponse.Result[] results = new SaleBatchResponse.Result[sales.size()];
+        List<Integer> valid = validate(sales, createdBy, results);
+        // Already saved by an earlier copy of this batch
+        Map<String, Long> recorded = recorded(valid.stream().map(sales::get).collect(Collectors.toList()));
+        valid.removeIf(index -> {
+            Long existing = recorded.get(sales.get(index).getClientRef());
+            if (existing != null) {
+                results[index] = new SaleBatchResponse.Result(index, true, existing, "Ya registrada.");
+            }
+            return existing != null;
+        });
+
+        List<Sale> toSave = valid.stream().map(sales::get).collect(Collectors.toList());
+        if (!toSave.isEmpty()) {
+            try {
+                requiresNew().executeWithoutResult(tx -> {
+                    commissionReports.applyRates(toSave);
+                    saleRepository.saveAll(toSave);
+                    saleRepository.flush();
+                    inventoryService.reserve(toSave);
+                    evictReportsOnCommit(toSave);
+                    ledgerService.recordSales(toSave);
+                    rollupService.record(toSave);
+                    Map<String, Object> events = new LinkedHashMap<>();
+                    toSave.forEach(sale -> events.put(createdKey(sale), createdPayload(sale)));
+                    outbox.enqueueAll(OutboxEvent.SALE_CREATED, events);
+                });
+                for (Integer index : valid) {
+                    results[index] = new SaleBatchResponse.Result(index, true, sales.get(index).getId(), null);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Bulk insert of a sale batch failed ({}), saving one by one", e.getMessage());
+                for (Integer index : valid) {
+                    results[index] = createIsolated(index, sales.get(index));
+                }
+            }
+        }
+
+        SaleBatchResponse response = new SaleBatchResponse();
+        response.setReceived(sales.size());
+        for (SaleBatchResponse.Result result : results) {
+            response.getResults().add(result);
+            if (result.isSuccess()) {
+                response.setCreated(response.getCreated() + 1);
+            } else {
+                response.setFailed(response.getFailed() + 1);
+            }
+        }
+        return response;
+    }
+
+    // Normalizes every sale and checks its references against one lookup per table
+    private List<Integer> validate(List<Sale> sales, User createdBy, SaleBatchResponse.Result[] results) {
+        Set<Long> clientIds = new HashSet<>();
+        Set<Long> barberIds = new HashSet<>();
+        Set<Long> typeIds = new HashSet<>();
+        Set<Long> productIds = new HashSet<>();
+        Set<String> clientRefs = new HashSet<>();
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < sales.size(); i++) {
+            Sale sale = sales.get(i);
+            String error = normalize(sale, createdBy);
+            if (error == null) {
+                error = checkClientRef(sale, clientRefs);
+            }
+            if (error != null) {
+                results[i] = new SaleBatchResponse.Result(i, false, null, error);
+                continue;
+            }
+            if (sale.getClient() != null) {
+                clientIds.add(sale.getClient().getId());
+            }
+            for (SaleItem item : sale.getItems()) {
+                if (item.getBarber() != null) {
+                    barberIds.add(item.getBarber().getId());
+                }
+                if (item.getService() != null) {
+                    typeIds.add(item.getService().getId());
+                }
+                if (item.getProduct() != null) {
+                    productIds.add(item.getProduct().getId());
+                }
+            }
+            candidates.add(i);
+        }
+
+        Map<Long, User> clients = byId(userRepository.findAllById(withoutNull(clientIds)), User::getId);
+        Map<Long, Barber> barbers = byId(barberRepository.findAllById(withoutNull(barberIds)), Barber::getId);
+        Map<Long, AppointmentType> types = byId(appointmentTypeRepository.findAllById(withoutNull(typeIds)),
+                AppointmentType::getId);
+        Map<Long, Product> products = byId(productRepository.findAllById(withoutNull(productIds)), Product::getId);
+
+        List<Integer> valid = new ArrayList<>();
+        for (Integer i : candidates) {
+            Sale sale = sales.get(i);
+            String error = null;
+            // Swap the id-only references from the payload for the loaded rows
+            if (sale.getClient() != null) {
+                sale.setClient(clients.get(sale.getClient().getId()));
+                if (sale.getClient() == null) {
+                    error = "El cliente no existe.";
+                }
+            }
+            for (SaleItem item : sale.getItems()) {
+                if (error != null) {
+                    break;
+                }
+                if (item.getBarber() != null) {
+                    item.setBarber(barbers.get(item.getBarber().getId()));
+                    if (item.getBarber() == null) {
+                        error = "El barbero del ítem '" + item.getItemName() + "' no existe.";
+                    }
+                }
+                if (item.getService() != null) {
+                    item.setService(types.get(item.getService().getId()));
+                    if (item.getService() == null) {
+                        error = "El servicio del ítem '" + item.getItemName() + "' no existe.";
+                    }
+                }
+                if (item.getProduct() != null) {
+                    item.setProduct(products.get(item.getProduct().getId()));
+                    if (item.getProduct() == null) {
+                        error = "El producto del ítem '" + item.getItemName() + "' no existe.";
+                    }
+                }
+            }
+            if (error != null) {
+                results[i] = new SaleBatchResponse.Result(i, false, null, error);
+            } else {
+                valid.add(i);
+            }
+        }
+        return valid;
+    }
+
+    // Batches are replayed, so each sale needs its own reference to be recognized
+    private static String checkClientRef(Sale sale, Set<String> seen) {
+        String ref = sale.getClientRef();
+        if (ref == null || ref.trim().isEmpty()) {
+            return "La venta no tiene clientRef.";
+        }
+        if (ref.length() > 64) {
+            return "El clientRef supera los 64 caracteres.";
+        }
+        if (!seen.add(ref)) {
+            return "El clientRef '" + ref + "' se repite en el lote.";
+        }
+        return null;
+    }
+
+    private SaleBatchResponse.Result createIsolated(int index, Sale sale) {
+        // Ids handed out by the rolled back attempt are discarded
+        sale.setId(null);
+        sale.getItems().forEach(item -> item.setId(null));
+        try {
+            Sale saved = requiresNew().execute(tx -> create(sale));
+            return new SaleBatchResponse.Result(index, true, saved.getId(), null);
+        } catch (RuntimeException e) {
+            // A concurrent copy of the batch saved it first
+            Long existing = recorded(Collections.singletonList(sale)).get(sale.getClientRef());
+            if (existing != null) {
+                return new SaleBatchResponse.Result(index, true, existing, "Ya registrada.");
+            }
+            String message = e.getMessage();
+            if (e.getCause() != null) {
+                message += " | Cause: " + e.getCause().getMessage();
+            }
+            return new SaleBatchResponse.Result(index, false, null, message);
+        }
+    }
+
+    // clientRef -> id of the given sales that are already saved
+    private Map<String, Long> recorded(List<Sale> sales) {
+        Set<String> refs = sales.stream().map(Sale::getClientRef).filter(ref -> ref != null)
+                .collect(Collectors.toSet());
+        Map<String, Long> ids = new HashMap<>();
+        if (!refs.isEmpty()) {
+            saleRepository.findIdsByClientRefIn(refs).forEach(row -> ids.put((String) row[0], (Long) row[1]));
+        }
+        return ids;
+    }
+
+    private static String createdKey(Sale sale) {
+        return "sale-created:" + sale.getId();
+    }
+
+    // What a loyalty or notification handler needs without loading the sale again
+    private static Map<String, Object> createdPayload(Sale sale) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("saleId", sale.getId());
+        payload.put("date", sale.getDate().toString());
+        payload.put("totalAmount", sale.getTotalAmount());
+        payload.put("paymentMethod", sale.getPaymentMethod());
+        payload.put("clientId", sale.getClient() != null ? sale.getClient().getId() : null);
+        payload.put("items", sale.getItems().size());
+        return payload;
+    }
+
+    // A sale stamped just before a cash cut can commit after a report of its period was cached as closed
+    private void evictReportsOnCommit(Collection<Sale> sales) {
+        Set<LocalDate> days = sales.stream().map(sale -> sale.getDate().toLocalDate()).collect(Collectors.toSet());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                commissionReports.salesRecorded(days);
+            }
+        });
+    }
+
+    private TransactionTemplate requiresNew() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    private static Set<Long> withoutNull(Set<Long> ids) {
+        ids.remove(null);
+        return ids;
+    }
+
+    private static <T> Map<Long, T> byId(List<T> rows, Function<T, Long> id) {
+        return rows.stream().collect(Collectors.toMap(id, Function.identity()));
+    }
+}
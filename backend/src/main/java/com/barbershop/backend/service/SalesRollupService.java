@@ -0,0 +1,379 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.model.Sale;
+import com.barbershop.backend.model.SaleItem;
+import com.barbershop.backend.payload.response.RevenueRow;
+import com.barbershop.backend.repository.AppointmentTypeRepository;
+import com.barbershop.backend.repository.BarberRepository;
+import com.barbershop.backend.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Revenue per day kept in daily_sales_rollup, so revenue reports read one row
+ * per day (and key) instead of scanning every sale and sale item in the range.
+ *
+ * Each committed sale adds itself to its day's rows in the same transaction that
+ * saves it. The backfill rebuilds whole days from the hot and archived sales: on
+ * startup when the table is empty, nightly for the last few days to repair any
+ * drift, and on demand. Only COMPLETED sales are counted.
+ */
+@Service
+public class SalesRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SalesRollupService.class);
+
+    public static final String TOTAL = "TOTAL";
+    public static final String PAYMENT_METHOD = "PAYMENT_METHOD";
+    public static final String BARBER = "BARBER";
+    public static final String SERVICE = "SERVICE";
+    public static final String PRODUCT = "PRODUCT";
+
+    private static final String ALL = "*";
+    private static final String NO_BARBER = "-";
+    private static final String COMPLETED = "COMPLETED";
+
+    // Days rebuilt per transaction by the backfill
+    private static final int BACKFILL_CHUNK_DAYS = 31;
+
+    private static final String INSERT_SQL = "INSERT INTO daily_sales_rollup "
+            + "(sale_day, dimension, dim_key, total, units, sale_count, updated_at) "
+            + "VALUES (:day, :dimension, :key, :total, :units, :sales, :now)";
+
+    private static final String UPDATE_SQL = "UPDATE daily_sales_rollup "
+            + "SET total = total + :total, units = units + :units, sale_count = sale_count + :sales, updated_at = :now "
+            + "WHERE sale_day = :day AND dimension = :dimension AND dim_key = :key";
+
+    private static final String SALES_OF_PERIOD = "SELECT CAST(s.date AS DATE) AS sale_day, "
+            + "UPPER(TRIM(s.payment_method)) AS method, COALESCE(s.total_amount, 0) AS amount, "
+            + "COALESCE((SELECT SUM(i.quantity) FROM %s i WHERE i.sale_id = s.id), 0) AS units "
+            + "FROM %s s WHERE s.date >= :start AND s.date < :end AND s.status = 'COMPLETED'";
+
+    private static final String SALES = "(" + String.format(SALES_OF_PERIOD, "sale_items", "sales")
+            + " UNION ALL " + String.format(SALES_OF_PERIOD, "sale_items_archive", "sales_archive") + ") x";
+
+    private static final String ITEMS_OF_PERIOD = "SELECT CAST(s.date AS DATE) AS sale_day, i.sale_id, "
+            + "i.barber_id, i.appointment_type_id, i.product_id, COALESCE(i.quantity, 0) AS units, "
+            + "COALESCE(i.subtotal, 0) AS amount "
+            + "FROM %s i JOIN %s s ON s.id = i.sale_id "
+            + "WHERE s.date >= :start AND s.date < :end AND s.status = 'COMPLETED'";
+
+    private static final String ITEMS = "(" + String.format(ITEMS_OF_PERIOD, "sale_items", "sales")
+            + " UNION ALL " + String.format(ITEMS_OF_PERIOD, "sale_items_archive", "sales_archive") + ") x";
+
+    private static final String INSERT_SELECT = "INSERT INTO daily_sales_rollup "
+            + "(sale_day, dimension, dim_key, total, units, sale_count, updated_at) ";
+
+    private static final List<String> BACKFILL_SQL = Arrays.asList(
+            INSERT_SELECT + "SELECT x.sale_day, 'TOTAL', '*', SUM(x.amount), SUM(x.units), COUNT(*), :now "
+                    + "FROM " + SALES + " GROUP BY x.sale_day",
+            INSERT_SELECT + "SELECT x.sale_day, 'PAYMENT_METHOD', x.method, SUM(x.amount), SUM(x.units), "
+                    + "COUNT(*), :now FROM " + SALES + " GROUP BY x.sale_day, x.method",
+            INSERT_SELECT + "SELECT x.sale_day, 'BARBER', COALESCE(CAST(x.barber_id AS VARCHAR(20)), '-'), "
+                    + "SUM(x.amount), SUM(x.units), COUNT(DISTINCT x.sale_id), :now "
+                    + "FROM " + ITEMS + " GROUP BY x.sale_day, x.barber_id",
+            INSERT_SELECT + "SELECT x.sale_day, 'SERVICE', CAST(x.appointment_type_id AS VARCHAR(20)), "
+                    + "SUM(x.amount), SUM(x.units), COUNT(DISTINCT x.sale_id), :now "
+                    + "FROM " + ITEMS + " WHERE x.appointment_type_id IS NOT NULL "
+                    + "GROUP BY x.sale_day, x.appointment_type_id",
+            INSERT_SELECT + "SELECT x.sale_day, 'PRODUCT', CAST(x.product_id AS VARCHAR(20)), "
+                    + "SUM(x.amount), SUM(x.units), COUNT(DISTINCT x.sale_id), :now "
+                    + "FROM " + ITEMS + " WHERE x.product_id IS NOT NULL "
+                    + "GROUP BY x.sale_day, x.product_id");
+
+    @Value("${barbershop.rollup.repair-days:7}")
+    private int repairDays;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BarberRepository barberRepository;
+
+    @Autowired
+    private AppointmentTypeRepository appointmentTypeRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    /**
+     * Adds the sales to their days. Must run in the transaction that saves them, so
+     * the rollup changes exactly when the sales do.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Collection<Sale> sales) {
+        // "day|dimension|key" -> {total, units, sales}; sorted keys keep the row lock order stable
+        Map<String, double[]> rows = new TreeMap<>();
+        for (Sale sale : sales) {
+            if (!COMPLETED.equals(sale.getStatus())) {
+                continue;
+            }
+            LocalDate day = sale.getDate().toLocalDate();
+            double amount = sale.getTotalAmount() == null ? 0 : sale.getTotalAmount();
+            long units = 0;
+
+            // Per sale first, so a sale with two items of one barber counts once for that barber
+            Map<String, double[]> itemRows = new HashMap<>();
+            for (SaleItem item : sale.getItems()) {
+                double subtotal = item.getSubtotal() == null ? 0 : item.getSubtotal();
+                int quantity = item.getQuantity() == null ? 0 : item.getQuantity();
+                units += quantity;
+                String barber = item.getBarber() != null ? String.valueOf(item.getBarber().getId()) : NO_BARBER;
+                add(itemRows, day + "|" + BARBER + "|" + barber, subtotal, quantity, 0);
+                if (item.getService() != null) {
+                    add(itemRows, day + "|" + SERVICE + "|" + item.getService().getId(), subtotal, quantity, 0);
+                }
+                if (item.getProduct() != null) {
+                    add(itemRows, day + "|" + PRODUCT + "|" + item.getProduct().getId(), subtotal, quantity, 0);
+                }
+            }
+            itemRows.forEach((key, row) -> add(rows, key, row[0], (long) row[1], 1));
+            add(rows, day + "|" + TOTAL + "|" + ALL, amount, units, 1);
+            add(rows, day + "|" + PAYMENT_METHOD + "|" + paymentMethodKey(sale.getPaymentMethod()), amount, units, 1);
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<MapSqlParameterSource> params = new ArrayList<>(rows.size());
+        rows.forEach((key, row) -> {
+            String[] parts = key.split("\\|", 3);
+            params.add(new MapSqlParameterSource()
+                    .addValue("day", Date.valueOf(LocalDate.parse(parts[0])))
+                    .addValue("dimension", parts[1])
+                    .addValue("key", parts[2])
+                    .addValue("total", row[0])
+                    .addValue("units", (long) row[1])
+                    .addValue("sales", (long) row[2])
+                    .addValue("now", now));
+        });
+
+        // Atomic upsert: the UPDATE row lock serializes concurrent sales of a day. A new row is
+        // inserted under a savepoint: on PostgreSQL a failed statement aborts the transaction.
+        int[] updated = jdbc.batchUpdate(UPDATE_SQL, params.toArray(new MapSqlParameterSource[0]));
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                MapSqlParameterSource row = params.get(i);
+                try {
+                    underSavepoint(() -> jdbc.update(INSERT_SQL, row));
+                } catch (DuplicateKeyException e) {
+                    // Another transaction created the row first
+                    jdbc.update(UPDATE_SQL, row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rows of one dimension for every day in [from, to], by day then key.
+     */
+    public List<RevenueRow> daily(String dimension, LocalDate from, LocalDate to) {
+        Map<String, String> labels = labels(dimension);
+        return jdbc.query("SELECT sale_day, dim_key, total, units, sale_count FROM daily_sales_rollup "
+                + "WHERE dimension = :dimension AND sale_day >= :from AND sale_day <= :to "
+                + "ORDER BY sale_day, dim_key", range(dimension, from, to),
+                (rs, n) -> new RevenueRow(rs.getDate(1).toLocalDate(), key(dimension, rs.getString(2)),
+                        labels.get(rs.getString(2)), round(rs.getDouble(3)), rs.getLong(4), rs.getLong(5)));
+    }
+
+    /**
+     * One dimension summed over [from, to], one row per key, highest revenue first.
+     */
+    public List<RevenueRow> totals(String dimension, LocalDate from, LocalDate to) {
+        Map<String, String> labels = labels(dimension);
+        return jdbc.query("SELECT dim_key, SUM(total) AS total, SUM(units), SUM(sale_count) "
+                + "FROM daily_sales_rollup "
+                + "WHERE dimension = :dimension AND sale_day >= :from AND sale_day <= :to "
+                + "GROUP BY dim_key ORDER BY total DESC", range(dimension, from, to),
+                (rs, n) -> new RevenueRow(null, key(dimension, rs.getString(1)), labels.get(rs.getString(1)),
+                        round(rs.getDouble(2)), rs.getLong(3), rs.getLong(4)));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        Long rows = jdbc.queryForObject("SELECT COUNT(*) FROM daily_sales_rollup", new MapSqlParameterSource(),
+                Long.class);
+        if (rows != null && rows == 0) {
+            firstSaleDay().ifPresent(first -> {
+                logger.info("daily_sales_rollup is empty, backfilling from {}", first);
+                rebuild(first, LocalDate.now());
+            });
+        }
+    }
+
+    // Recent days are rebuilt from the raw sales in case they were changed outside the POS
+    @Scheduled(cron = "${barbershop.rollup.cron:0 0 4 * * *}")
+    public void scheduledRepair() {
+        LocalDate today = LocalDate.now();
+        rebuild(today.minusDays(repairDays), today);
+    }
+
+    /**
+     * Recomputes [from, to] from the hot and archived sales, a month of days per
+     * transaction. Returns the days and rows written, or an empty map when another
+     * rebuild is still running.
+     */
+    public Map<String, Object> rebuild(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new RuntimeException("Error: 'to' must not be before 'from'.");
+        }
+        if (!rebuilding.compareAndSet(false, true)) {
+            return Collections.emptyMap();
+        }
+        try {
+            long days = 0;
+            int rows = 0;
+            for (LocalDate start = from; !start.isAfter(to); start = start.plusDays(BACKFILL_CHUNK_DAYS)) {
+                LocalDate end = start.plusDays(BACKFILL_CHUNK_DAYS - 1).isAfter(to) ? to
+                        : start.plusDays(BACKFILL_CHUNK_DAYS - 1);
+                rows += rebuildChunk(start, end);
+                days += end.toEpochDay() - start.toEpochDay() + 1;
+            }
+            logger.info("Rebuilt {} days ({} rows) from {} to {}", days, rows, from, to);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("from", from);
+            result.put("to", to);
+            result.put("days", days);
+            result.put("rows", rows);
+            return result;
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    public static String paymentMethodKey(String paymentMethod) {
+        return paymentMethod == null ? "UNKNOWN" : paymentMethod.trim().toUpperCase();
+    }
+
+    // A sale committing a new row for one of these days meanwhile makes the INSERT collide; the retry includes it
+    private int rebuildChunk(LocalDate from, LocalDate to) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Date.valueOf(from))
+                .addValue("to", Date.valueOf(to))
+                .addValue("start", Timestamp.valueOf(from.atStartOfDay()))
+                .addValue("end", Timestamp.valueOf(to.plusDays(1).atStartOfDay()))
+                .addValue("now", Timestamp.valueOf(LocalDateTime.now()));
+        for (int attempt = 1;; attempt++) {
+            try {
+                return transactionTemplate.execute(tx -> {
+                    jdbc.update("DELETE FROM daily_sales_rollup WHERE sale_day >= :from AND sale_day <= :to", params);
+                    int rows = 0;
+                    for (String sql : BACKFILL_SQL) {
+                        rows += jdbc.update(sql, params);
+                    }
+                    return rows;
+                });
+            } catch (DataIntegrityViolationException e) {
+                if (attempt == 3) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Day of the oldest sale, hot or archived
+    public Optional<LocalDate> firstSaleDay() {
+        Timestamp first = jdbc.queryForObject("SELECT MIN(d) FROM (SELECT MIN(date) AS d FROM sales "
+                + "UNION ALL SELECT MIN(date) AS d FROM sales_archive) x", new MapSqlParameterSource(),
+                Timestamp.class);
+        return Optional.ofNullable(first).map(t -> t.toLocalDateTime().toLocalDate());
+    }
+
+    // Names are looked up when reading, so renaming a barber or service relabels its history
+    private Map<String, String> labels(String dimension) {
+        Map<String, String> labels = new HashMap<>();
+        switch (dimension) {
+            case BARBER:
+                barberRepository.findAll().forEach(b -> labels.put(String.valueOf(b.getId()), b.getName()));
+                labels.put(NO_BARBER, "Sin barbero");
+                break;
+            case SERVICE:
+                appointmentTypeRepository.findAll().forEach(t -> labels.put(String.valueOf(t.getId()), t.getName()));
+                break;
+            case PRODUCT:
+                productRepository.findAll().forEach(p -> labels.put(String.valueOf(p.getId()), p.getName()));
+                break;
+            default:
+                break;
+        }
+        return labels;
+    }
+
+    // The TOTAL rows share a single key that means nothing to a client
+    private static String key(String dimension, String key) {
+        return TOTAL.equals(dimension) ? null : key;
+    }
+
+    // Rolls back to a savepoint if the statement fails, so the transaction stays usable
+    private void underSavepoint(Runnable statement) {
+        jdbc.getJdbcOperations().execute((ConnectionCallback<Void>) connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                statement.run();
+            } catch (RuntimeException e) {
+                connection.rollback(savepoint);
+                throw e;
+            }
+            connection.releaseSavepoint(savepoint);
+            return null;
+        });
+    }
+
+    private static MapSqlParameterSource range(String dimension, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new RuntimeException("Error: 'to' must not be before 'from'.");
+        }
+        return new MapSqlParameterSource()
+                .addValue("dimension", dimension)
+                .addValue("from", Date.valueOf(from))
+                .addValue("to", Date.valueOf(to));
+    }
+
+    private static void add(Map<String, double[]> rows, String key, double total, long units, long sales) {
+        double[] row = rows.computeIfAbsent(key, k -> new double[3]);
+        row[0] += total;
+        row[1] += units;
+        row[2] += sales;
+    }
+
+    private static double round(double amount) {
+        return Math.round(amount * 100) / 100.0;
+    }
+}
@@ -0,0 +1,520 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.exception.SlotUnavailableException;
+import com.barbershop.backend.model.Appointment;
+import com.barbershop.backend.model.AppointmentSeries;
+import com.barbershop.backend.model.AppointmentType;
+import com.barbershop.backend.model.Barber;
+import com.barbershop.backend.model.User;
+import com.barbershop.backend.payload.request.SeriesRequest;
+import com.barbershop.backend.payload.response.AppointmentSummary;
+import com.barbershop.backend.repository.AppointmentRepository;
+import com.barbershop.backend.repository.AppointmentSeriesRepository;
+import com.barbershop.backend.repository.AppointmentTypeRepository;
+import com.barbershop.backend.repository.BarberRepository;
+import com.barbershop.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Recurring bookings.
+ *
+ * A series only materializes the occurrences inside a rolling horizon; a nightly
+ * job extends every active series. Each materialization checks all occurrences
+ * against the availability index in one pass under the barber's day locks, then
+ * against the database under the barber's row lock (bookings of other nodes), and
+ * writes the free ones with a single JDBC batch. Occurrences that collide with
+ * an existing booking are skipped and reported.
+ *
+ * Edits and cancellations touch the future occurrences with one bulk statement.
+ * A reschedule deletes and rewrites them in one transaction.
+ */
+@Service
+public class SeriesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SeriesService.class);
+
+    private static final String INSERT_OCCURRENCE = "INSERT INTO appointments (created_at, created_by, "
+            + "creation_source, start_time, end_time, slot_start, status, guest_name, guest_email, guest_phone, "
+            + "notes, appointment_type_id, barber_id, user_id, series_id) "
+            + "VALUES (?, ?, 'SERIES', ?, ?, ?, 'BOOKED', ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Value("${barbershop.series.horizon-days:60}")
+    private int horizonDays;
+
+    @Value("${barbershop.series.batch-size:100}")
+    private int batchSize;
+
+    @Autowired
+    private AppointmentSeriesRepository seriesRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private BarberRepository barberRepository;
+
+    @Autowired
+    private AppointmentTypeRepository appointmentTypeRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AvailabilityIndexService availabilityIndex;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private AppointmentBroadcaster broadcaster;
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    public Map<String, Object> create(SeriesRequest request, String createdBy) {
+        AppointmentSeries series = new AppointmentSeries();
+        series.setInterval(1);
+        apply(series, request);
+        if (series.getUser() == null && (series.getGuestName() == null || series.getGuestEmail() == null)) {
+            throw new RuntimeException("Error: Guest name and email are required for guest bookings.");
+        }
+        series.setStatus(AppointmentSeries.Status.ACTIVE);
+        series.setCreatedAt(LocalDateTime.now());
+        series.setCreatedBy(createdBy);
+        series = seriesRepository.save(series);
+
+        List<LocalDateTime> conflicts = new ArrayList<>();
+        int created;
+        try {
+            created = materialize(series, LocalDate.now(), LocalDate.now().plusDays(horizonDays), conflicts);
+        } catch (SlotUnavailableException e) {
+            seriesRepository.delete(series);
+            throw e;
+        }
+        return result(series, created, conflicts);
+    }
+
+    /**
+     * Applies the changes to the series. Rule, time or barber changes replace the
+     * future occurrences (one delete, one batch insert); anything else is a single
+     * bulk update of the future occurrences.
+     */
+    public Map<String, Object> update(Long id, SeriesRequest request) {
+        AppointmentSeries series = find(id);
+        if (series.getStatus() == AppointmentSeries.Status.CANCELLED) {
+            throw new RuntimeException("Error: The series is cancelled.");
+        }
+        String previousSchedule = scheduleOf(series);
+        apply(series, request);
+        LocalDateTime now = LocalDateTime.now();
+
+        if (previousSchedule.equals(scheduleOf(series))) {
+            AppointmentSeries updated = series;
+            transactionTemplate.execute(status -> {
+                appointmentRepository.updateSeriesDetails(id, now, updated.getNotes(), updated.getGuestName(),
+                        updated.getGuestEmail(), updated.getGuestPhone());
+                return seriesRepository.save(updated);
+            });
+            // Refresh today's board entries from the database
+            for (Appointment appointment : appointmentRepository.findBySeriesIdAndStartTimeBetween(id, now,
+                    now.toLocalDate().plusDays(1).atStartOfDay())) {
+                broadcaster.updated(AppointmentSummary.from(appointment));
+            }
+            return result(series, 0, new ArrayList<>());
+        }
+
+        List<Appointment> replaced = appointmentRepository
+                .findBySeriesIdAndStatusAndStartTimeGreaterThanEqual(id, Appointment.Status.BOOKED, now);
+        List<LocalDateTime> conflicts = new ArrayList<>();
+        int created = materialize(series, LocalDate.now(), LocalDate.now().plusDays(horizonDays), replaced,
+                conflicts);
+        replaced.forEach(a -> waitlistService.slotFreed(a.getBarber().getId(), a.getStartTime()));
+        return result(series, created, conflicts);
+    }
+
+    /**
+     * Cancels every future occurrence with one statement and stops the series.
+     */
+    public Map<String, Object> cancel(Long id) {
+        AppointmentSeries series = find(id);
+        LocalDateTime now = LocalDateTime.now();
+        List<Appointment> cancelled = appointmentRepository
+                .findBySeriesIdAndStatusAndStartTimeGreaterThanEqual(id, Appointment.Status.BOOKED, now);
+
+        series.setStatus(AppointmentSeries.Status.CANCELLED);
+        Integer count = transactionTemplate.execute(status -> {
+            int rows = appointmentRepository.cancelSeriesFrom(id, now);
+            seriesRepository.save(series);
+            return rows;
+        });
+        for (Appointment appointment : cancelled) {
+            availabilityIndex.remove(appointment.getId());
+            waitlistService.slotFreed(appointment.getBarber().getId(), appointment.getStartTime());
+            if (isToday(appointment)) {
+                appointment.setStatus(Appointment.Status.CANCELLED);
+                broadcaster.updated(AppointmentSummary.from(appointment));
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("series", series);
+        response.put("cancelled", count);
+        return response;
+    }
+
+    // Keeps every active series materialized up to the horizon
+    @Scheduled(cron = "${barbershop.series.cron:0 0 2 * * *}")
+    public void extendAll() {
+        LocalDate today = LocalDate.now();
+        LocalDate horizon = today.plusDays(horizonDays);
+        for (AppointmentSeries series : seriesRepository.findByStatus(AppointmentSeries.Status.ACTIVE)) {
+            LocalDate from = series.getMaterializedUntil() == null ? today
+                    : series.getMaterializedUntil().plusDays(1);
+            if (from.isBefore(today)) {
+                from = today;
+            }
+            if (from.isAfter(horizon)) {
+                continue;
+            }
+            List<LocalDateTime> conflicts = new ArrayList<>();
+            try {
+                materialize(series, from, horizon, conflicts);
+            } catch (SlotUnavailableException e) {
+                // Retried on the next run
+                logger.warn("Series {} not extended: {}", series.getId(), e.getMessage());
+                continue;
+            }
+            if (!conflicts.isEmpty()) {
+                logger.info("Series {} skipped busy occurrences {}", series.getId(), conflicts);
+            }
+        }
+    }
+
+    private int materialize(AppointmentSeries series, LocalDate from, LocalDate to, List<LocalDateTime> conflicts) {
+        return materialize(series, from, to, new ArrayList<>(), conflicts);
+    }
+
+    /**
+     * Writes the free occurrences between from and to. The replaced occurrences
+     * are deleted in the same transaction, under the day locks of both the old and
+     * the new schedule, so a failed reschedule leaves the series as it was.
+     */
+    private int materialize(AppointmentSeries series, LocalDate from, LocalDate to, List<Appointment> replaced,
+            List<LocalDateTime> conflicts) {
+        LocalDateTime now = LocalDateTime.now();
+        List<LocalDateTime> starts = new ArrayList<>();
+        for (LocalDateTime start : occurrences(series, from, to)) {
+            if (start.isAfter(now)) {
+                starts.add(start);
+            }
+        }
+        if (starts.isEmpty() && replaced.isEmpty()) {
+            series.setMaterializedUntil(to);
+            seriesRepository.save(series);
+            return 0;
+        }
+
+        Long barberId = series.getBarber().getId();
+        Set<LocalDate> days = new LinkedHashSet<>();
+        starts.forEach(start -> days.add(start.toLocalDate()));
+        Long replacedBarberId = replaced.isEmpty() ? barberId : replaced.get(0).getBarber().getId();
+        Set<LocalDate> replacedDays = new LinkedHashSet<>();
+        replaced.forEach(appointment -> replacedDays.add(appointment.getStartTime().toLocalDate()));
+
+        if (!starts.isEmpty()) {
+            // One range query loads every day of the series that is not indexed yet
+            availabilityIndex.preload(List.of(barberId), starts.get(0).toLocalDate(),
+                    starts.get(starts.size() - 1).toLocalDate());
+        }
+
+        List<Appointment> created = bookingService.withDayLocks(replacedBarberId, replacedDays,
+                () -> bookingService.withDayLocks(barberId, days,
+                        () -> writeOccurrences(series, to, starts, replaced, conflicts)));
+
+        for (Appointment appointment : replaced) {
+            if (isToday(appointment)) {
+                broadcaster.deleted(appointment.getId());
+            }
+        }
+        for (Appointment appointment : created) {
+            if (isToday(appointment)) {
+                broadcaster.created(AppointmentSummary.from(appointment));
+            }
+        }
+        return created.size();
+    }
+
+    // Runs under the day locks of the replaced and the new occurrences
+    private List<Appointment> writeOccurrences(AppointmentSeries series, LocalDate to, List<LocalDateTime> starts,
+            List<Appointment> replaced, List<LocalDateTime> conflicts) {
+        Long barberId = series.getBarber().getId();
+        int minutes = series.getDurationMinutes();
+
+        // The replaced occurrences do not block the new ones; they are indexed again if the save fails
+        replaced.forEach(appointment -> availabilityIndex.remove(appointment.getId()));
+        List<LocalDateTime> free = new ArrayList<>();
+        for (LocalDateTime start : starts) {
+            if (availabilityIndex.isFree(barberId, start, minutes)) {
+                free.add(start);
+            } else {
+                conflicts.add(start);
+            }
+        }
+
+        List<Appointment> elsewhere = new ArrayList<>();
+        boolean saved = false;
+        try {
+            transactionTemplate.execute(status -> {
+                if (!replaced.isEmpty()) {
+                    appointmentRepository.deleteSeriesFrom(series.getId(), replaced.stream()
+                            .map(Appointment::getStartTime).min(LocalDateTime::compareTo).get());
+                }
+                if (!free.isEmpty()) {
+                    // Bookings made through other nodes are only visible in the database
+                    elsewhere.addAll(bookingService.lockCalendar(barberId, free.get(0),
+                            free.get(free.size() - 1).plusMinutes(minutes)));
+                    free.removeIf(start -> {
+                        if (!overlapsAny(elsewhere, start, minutes)) {
+                            return false;
+                        }
+                        conflicts.add(start);
+                        return true;
+                    });
+                }
+                jdbcTemplate.batchUpdate(INSERT_OCCURRENCE, free, batchSize,
+                        (ps, start) -> bindOccurrence(ps, series, start, minutes));
+                series.setMaterializedUntil(to);
+                return seriesRepository.save(series);
+            });
+            saved = true;
+        } catch (DataIntegrityViolationException e) {
+            // Another node booked one of the start times
+            throw new SlotUnavailableException("Error: Part of the series was just booked by someone else.",
+                    new ArrayList<>());
+        } finally {
+            if (!saved) {
+                replaced.forEach(availabilityIndex::index);
+            }
+        }
+        elsewhere.forEach(availabilityIndex::index);
+        conflicts.sort(null);
+        if (free.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Index the new rows before other bookings of these days can run
+        List<Appointment> rows = appointmentRepository.findBySeriesIdAndStartTimeBetween(series.getId(),
+                free.get(0), free.get(free.size() - 1));
+        rows.forEach(availabilityIndex::index);
+        return rows;
+    }
+
+    private static boolean overlapsAny(List<Appointment> booked, LocalDateTime start, int minutes) {
+        LocalDateTime end = start.plusMinutes(minutes);
+        return booked.stream().anyMatch(a -> a.getStartTime().isBefore(end) && a.getEndTime().isAfter(start));
+    }
+
+    // Occurrence start times of the rule between from and to (inclusive dates)
+    private static List<LocalDateTime> occurrences(AppointmentSeries series, LocalDate from, LocalDate to) {
+        List<LocalDateTime> starts = new ArrayList<>();
+        for (int n = 0;; n++) {
+            if (series.getCount() != null && n >= series.getCount()) {
+                break;
+            }
+            LocalDate date = series.occurrenceDate(n);
+            if (date.isAfter(to) || (series.getUntil() != null && date.isAfter(series.getUntil()))) {
+                break;
+            }
+            if (!date.isBefore(from)) {
+                starts.add(date.atTime(series.getTimeOfDay()));
+            }
+        }
+        return starts;
+    }
+
+    private static void bindOccurrence(PreparedStatement ps, AppointmentSeries series, LocalDateTime start,
+            int minutes) throws SQLException {
+        ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+        ps.setString(2, series.getCreatedBy());
+        ps.setTimestamp(3, Timestamp.valueOf(start));
+        ps.setTimestamp(4, Timestamp.valueOf(start.plusMinutes(minutes)));
+        ps.setTimestamp(5, Timestamp.valueOf(start));
+        ps.setString(6, series.getGuestName());
+        ps.setString(7, series.getGuestEmail());
+        ps.setString(8, series.getGuestPhone());
+        ps.setString(9, series.getNotes());
+        ps.setObject(10, series.getAppointmentType() != null ? series.getAppointmentType().getId() : null,
+                Types.BIGINT);
+        ps.setLong(11, series.getBarber().getId());
+        ps.setObject(12, series.getUser() != null ? series.getUser().getId() : null, Types.BIGINT);
+        ps.setLong(13, series.getId());
+    }
+
+    private void apply(AppointmentSeries series, SeriesRequest request) {
+        if (request.getRrule() != null) {
+            applyRrule(series, request.getRrule());
+        }
+        if (request.getFrequency() != null) {
+            series.setFrequency(parseFrequency(request.getFrequency()));
+        }
+        if (request.getInterval() != null) {
+            series.setInterval(request.getInterval());
+        }
+        if (request.getUntil() != null) {
+            series.setUntil(request.getUntil());
+        }
+        if (request.getCount() != null) {
+            series.setCount(request.getCount());
+        }
+        if (request.getStartDate() != null) {
+            series.setStartDate(request.getStartDate());
+        }
+        if (request.getStartTime() != null) {
+            series.setTimeOfDay(request.getStartTime());
+        }
+        if (request.getBarberId() != null) {
+            Barber barber = barberRepository.findById(request.getBarberId())
+                    .orElseThrow(() -> new RuntimeException("Error: Barber not found."));
+            series.setBarber(barber);
+        }
+        if (request.getAppointmentTypeId() != null) {
+            AppointmentType type = appointmentTypeRepository.findById(request.getAppointmentTypeId())
+                    .orElseThrow(() -> new RuntimeException("Error: Appointment type not found."));
+            series.setAppointmentType(type);
+            if (request.getDurationMinutes() == null && type.getDurationMinutes() != null
+                    && type.getDurationMinutes() > 0) {
+                series.setDurationMinutes(type.getDurationMinutes());
+            }
+        }
+        if (request.getDurationMinutes() != null) {
+            series.setDurationMinutes(request.getDurationMinutes());
+        }
+        if (request.getUserId() != null) {
+            User user = userRepository.findById(request.getUserId())
+                    .orElseThrow(() -> new RuntimeException("Error: User not found."));
+            series.setUser(user);
+        }
+        if (request.getGuestName() != null) {
+            series.setGuestName(request.getGuestName());
+        }
+        if (request.getGuestEmail() != null) {
+            series.setGuestEmail(request.getGuestEmail());
+        }
+        if (request.getGuestPhone() != null) {
+            series.setGuestPhone(request.getGuestPhone());
+        }
+        if (request.getNotes() != null) {
+            series.setNotes(request.getNotes());
+        }
+
+        if (series.getDurationMinutes() == null) {
+            series.setDurationMinutes(AvailabilityIndexService.DEFAULT_DURATION_MINUTES);
+        }
+        if (series.getBarber() == null || series.getStartDate() == null || series.getTimeOfDay() == null
+                || series.getFrequency() == null) {
+            throw new RuntimeException("Error: Barber, start date, start time and frequency are required.");
+        }
+        if (series.getInterval() == null || series.getInterval() < 1 || series.getDurationMinutes() < 1
+                || (series.getCount() != null && series.getCount() < 1)) {
+            throw new RuntimeException("Error: Interval, duration and count must be positive.");
+        }
+    }
+
+    // FREQ=WEEKLY;INTERVAL=2;UNTIL=20261231;COUNT=10 (RRULE: prefix optional)
+    private static void applyRrule(AppointmentSeries series, String rrule) {
+        String rule = rrule.trim();
+        if (rule.toUpperCase().startsWith("RRULE:")) {
+            rule = rule.substring("RRULE:".length());
+        }
+        for (String part : rule.split(";")) {
+            String[] pair = part.split("=", 2);
+            if (pair.length != 2) {
+                throw new RuntimeException("Error: Invalid RRULE part '" + part + "'.");
+            }
+            String value = pair[1].trim();
+            try {
+                switch (pair[0].trim().toUpperCase()) {
+                    case "FREQ":
+                        series.setFrequency(parseFrequency(value));
+                        break;
+                    case "INTERVAL":
+                        series.setInterval(Integer.parseInt(value));
+                        break;
+                    case "COUNT":
+                        series.setCount(Integer.parseInt(value));
+                        break;
+                    case "UNTIL":
+                        series.setUntil(LocalDate.parse(value.substring(0, 8), DateTimeFormatter.BASIC_ISO_DATE));
+                        break;
+                    default:
+                        throw new RuntimeException("Error: Unsupported RRULE part '" + pair[0] + "'.");
+                }
+            } catch (NumberFormatException | DateTimeParseException | StringIndexOutOfBoundsException e) {
+                throw new RuntimeException("Error: Invalid RRULE value '" + part + "'.");
+            }
+        }
+    }
+
+    private static AppointmentSeries.Frequency parseFrequency(String value) {
+        try {
+            return AppointmentSeries.Frequency.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Error: Unsupported frequency '" + value + "'.");
+        }
+    }
+
+    // Everything that decides where the occurrences fall
+    private static String scheduleOf(AppointmentSeries series) {
+        return series.getRrule() + "|" + series.getStartDate() + "|" + series.getTimeOfDay() + "|"
+                + series.getDurationMinutes() + "|" + series.getBarber().getId() + "|"
+                + (series.getAppointmentType() != null ? series.getAppointmentType().getId() : null) + "|"
+                + (series.getUser() != null ? series.getUser().getId() : null);
+    }
+
+    private AppointmentSeries find(Long id) {
+        return seriesRepository.findById(id).orElseThrow(() -> new RuntimeException("Error: Series not found."));
+    }
+
+    private static boolean isToday(Appointment appointment) {
+        return appointment.getStartTime() != null
+                && Objects.equals(appointment.getStartTime().toLocalDate(), LocalDate.now());
+    }
+
+    private static Map<String, Object> result(AppointmentSeries series, int created, List<LocalDateTime> conflicts) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("series", series);
+        response.put("created", created);
+        response.put("conflicts", conflicts);
+        return response;
+    }
+}
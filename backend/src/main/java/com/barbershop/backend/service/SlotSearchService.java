@@ -0,0 +1,96 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.model.Barber;
+import com.barbershop.backend.payload.response.AvailableSlotResponse;
+import com.barbershop.backend.repository.BarberRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the earliest free windows across every active barber.
+ *
+ * All bookings of the range are pulled into the availability index with a single
+ * query, each barber is then scanned in parallel from memory and the per-barber
+ * results (already sorted) are merged by start time.
+ */
+@Service
+public class SlotSearchService {
+
+    public static final int MAX_RANGE_DAYS = 31;
+    public static final int MAX_RESULTS = 50;
+
+    @Autowired
+    private BarberRepository barberRepository;
+
+    @Autowired
+    private AvailabilityIndexService availabilityIndex;
+
+    public List<AvailableSlotResponse> findNextAvailable(LocalDate from, LocalDate to, int durationMinutes,
+            int stepMinutes, int limit) {
+        List<Barber> barbers = barberRepository.findByActiveTrue();
+        if (barbers.isEmpty() || to.isBefore(from)) {
+            return new ArrayList<>();
+        }
+
+        availabilityIndex.preload(barbers.stream().map(Barber::getId).collect(Collectors.toList()), from, to);
+
+        List<CompletableFuture<List<AvailableSlotResponse>>> futures = barbers.stream()
+                .map(barber -> CompletableFuture.supplyAsync(
+                        () -> scanBarber(barber, from, to, durationMinutes, stepMinutes, limit)))
+                .collect(Collectors.toList());
+
+        List<List<AvailableSlotResponse>> perBarber = futures.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+        return mergeEarliest(perBarber, limit);
+    }
+
+    // Earliest windows of one barber, stopping as soon as the limit is reached
+    private List<AvailableSlotResponse> scanBarber(Barber barber, LocalDate from, LocalDate to, int durationMinutes,
+            int stepMinutes, int limit) {
+        List<AvailableSlotResponse> slots = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to) && slots.size() < limit; day = day.plusDays(1)) {
+            for (LocalDateTime start : availabilityIndex.findFreeWindows(barber.getId(), day, durationMinutes,
+                    stepMinutes)) {
+                slots.add(new AvailableSlotResponse(barber.getId(), barber.getName(), start,
+                        start.plusMinutes(durationMinutes)));
+                if (slots.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return slots;
+    }
+
+    // k-way merge of the sorted per-barber lists
+    private List<AvailableSlotResponse> mergeEarliest(List<List<AvailableSlotResponse>> lists, int limit) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Comparator
+                .comparing((int[] head) -> lists.get(head[0]).get(head[1]).getStartTime())
+                .thenComparing(head -> lists.get(head[0]).get(head[1]).getBarberId()));
+        for (int i = 0; i < lists.size(); i++) {
+            if (!lists.get(i).isEmpty()) {
+                heads.add(new int[] { i, 0 });
+            }
+        }
+
+        List<AvailableSlotResponse> result = new ArrayList<>();
+        while (!heads.isEmpty() && result.size() < limit) {
+            int[] head = heads.poll();
+            List<AvailableSlotResponse> list = lists.get(head[0]);
+            result.add(list.get(head[1]));
+            if (head[1] + 1 < list.size()) {
+                heads.add(new int[] { head[0], head[1] + 1 });
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,24 @@
+package com.barbershop.backend.service;
+
+/**
+ * Content written to the {@link BlobStore}.
+ */
+public class StoredBlob {
+
+    private final String hash;
+    private final long size;
+
+    public StoredBlob(String hash, long size) {
+        this.hash = hash;
+        this.size = size;
+    }
+
+    // Lowercase hex SHA-256 of the content
+    public String getHash() {
+        return hash;
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,458 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.exception.SlotUnavailableException;
+import com.barbershop.backend.model.Appointment;
+import com.barbershop.backend.model.AppointmentType;
+import com.barbershop.backend.model.Barber;
+import com.barbershop.backend.model.User;
+import com.barbershop.backend.model.WaitlistEntry;
+import com.barbershop.backend.payload.request.WaitlistRequest;
+import com.barbershop.backend.payload.response.AppointmentSummary;
+import com.barbershop.backend.repository.AppointmentTypeRepository;
+import com.barbershop.backend.repository.BarberRepository;
+import com.barbershop.backend.repository.UserRepository;
+import com.barbershop.backend.repository.WaitlistEntryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Cancellation waitlist.
+ *
+ * Waiting entries are kept in memory, bucketed by (barber or any barber, day) and
+ * indexed inside a bucket by service duration, then time window, each group
+ * ordered by arrival. When a slot frees up only the two buckets of that barber
+ * and day are looked at, and only the durations and windows that fit in the free
+ * run around the slot, so a cancellation never walks the whole waitlist.
+ *
+ * The first fitting entry either gets the slot booked through
+ * {@link BookingService} (autoBook) or an offer that it can accept for
+ * {@link #OFFER_MINUTES} before the slot goes to the next one. Matching runs on a
+ * single thread so one freed slot is never handed to two clients.
+ *
+ * Every status change is a conditional UPDATE on the status it expects, so the
+ * matcher's in-memory copy of an entry can never overwrite a client leaving or
+ * accepting at the same moment.
+ */
+@Service
+public class WaitlistService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WaitlistService.class);
+
+    public static final int OFFER_MINUTES = 15;
+
+    private static final long ANY_BARBER = 0L;
+    private static final int MAX_BOOKING_ATTEMPTS = 3;
+
+    private static final Comparator<WaitlistEntry> ARRIVAL_ORDER = Comparator
+            .comparing(WaitlistEntry::getCreatedAt)
+            .thenComparing(WaitlistEntry::getId);
+
+    @Autowired
+    private WaitlistEntryRepository waitlistRepository;
+
+    @Autowired
+    private BarberRepository barberRepository;
+
+    @Autowired
+    private AppointmentTypeRepository appointmentTypeRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AvailabilityIndexService availabilityIndex;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private AppointmentBroadcaster broadcaster;
+
+    private final ConcurrentHashMap<BucketKey, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final ExecutorService matcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "waitlist-matcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        for (WaitlistEntry entry : waitlistRepository.findByStatusAndDateGreaterThanEqual(
+                WaitlistEntry.Status.WAITING, LocalDate.now())) {
+            add(entry);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        matcher.shutdownNow();
+    }
+
+    public WaitlistEntry join(WaitlistRequest request, User caller, boolean isAdmin) {
+        if (request.getDate() == null || request.getWindowStart() == null || request.getWindowEnd() == null
+                || !request.getWindowStart().isBefore(request.getWindowEnd())) {
+            throw new RuntimeException("Error: Date and a valid time window are required.");
+        }
+        if (request.getDate().isBefore(LocalDate.now())) {
+            throw new RuntimeException("Error: The date is in the past.");
+        }
+
+        WaitlistEntry entry = new WaitlistEntry();
+        if (isAdmin && request.getUserId() != null) {
+            entry.setUser(userRepository.findById(request.getUserId())
+                    .orElseThrow(() -> new RuntimeException("Error: User not found.")));
+        } else if (isAdmin && request.getGuestName() != null) {
+            if (request.getGuestEmail() == null) {
+                throw new RuntimeException("Error: Guest name and email are required for guest bookings.");
+            }
+            entry.setGuestName(request.getGuestName());
+            entry.setGuestEmail(request.getGuestEmail());
+            entry.setGuestPhone(request.getGuestPhone());
+        } else {
+            entry.setUser(caller);
+        }
+
+        if (request.getBarberId() != null) {
+            entry.setBarber(barberRepository.findById(request.getBarberId())
+                    .orElseThrow(() -> new RuntimeException("Error: Barber not found.")));
+        }
+        int duration = AvailabilityIndexService.DEFAULT_DURATION_MINUTES;
+        if (request.getAppointmentTypeId() != null) {
+            AppointmentType type = appointmentTypeRepository.findById(request.getAppointmentTypeId())
+                    .orElseThrow(() -> new RuntimeException("Error: Appointment type not found."));
+            entry.setAppointmentType(type);
+            if (type.getDurationMinutes() != null && type.getDurationMinutes() > 0) {
+                duration = type.getDurationMinutes();
+            }
+        }
+        entry.setDurationMinutes(duration);
+        entry.setDate(request.getDate());
+        entry.setWindowStart(request.getWindowStart());
+        entry.setWindowEnd(request.getWindowEnd());
+        entry.setAutoBook(Boolean.TRUE.equals(request.getAutoBook()));
+        entry.setNotes(request.getNotes());
+        entry.setStatus(WaitlistEntry.Status.WAITING);
+        entry.setCreatedAt(LocalDateTime.now());
+
+        WaitlistEntry saved = waitlistRepository.save(entry);
+        add(saved);
+        return saved;
+    }
+
+    public WaitlistEntry leave(WaitlistEntry entry) {
+        if (waitlistRepository.changeStatus(entry.getId(),
+                List.of(WaitlistEntry.Status.WAITING, WaitlistEntry.Status.OFFERED),
+                WaitlistEntry.Status.CANCELLED) == 0) {
+            throw new RuntimeException("Error: The entry is no longer on the waitlist.");
+        }
+        remove(entry);
+        entry.setStatus(WaitlistEntry.Status.CANCELLED);
+        return entry;
+    }
+
+    /**
+     * Books the offered slot for the client. A slot taken in the meantime puts the
+     * entry back on the waitlist and surfaces as 409.
+     */
+    public Appointment accept(WaitlistEntry entry, String acceptedBy) {
+        if (entry.getStatus() != WaitlistEntry.Status.OFFERED
+                || entry.getOfferExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new RuntimeException("Error: There is no open offer for this entry.");
+        }
+        Barber barber = barberRepository.findById(entry.getOfferedBarberId())
+                .orElseThrow(() -> new RuntimeException("Error: Barber not found."));
+        // Claimed first, so the offer cannot expire or be left while it is booked
+        if (waitlistRepository.changeStatus(entry.getId(), List.of(WaitlistEntry.Status.OFFERED),
+                WaitlistEntry.Status.BOOKED) == 0) {
+            throw new RuntimeException("Error: There is no open offer for this entry.");
+        }
+        try {
+            return book(entry, barber, entry.getOfferedStart(), acceptedBy);
+        } catch (SlotUnavailableException e) {
+            requeue(entry, WaitlistEntry.Status.BOOKED);
+            throw e;
+        }
+    }
+
+    /**
+     * Called after an appointment starting at {@code start} stopped blocking the
+     * barber. Matching happens asynchronously so the cancellation response is not
+     * delayed.
+     */
+    public void slotFreed(Long barberId, LocalDateTime start) {
+        if (barberId == null || start == null || start.isBefore(LocalDateTime.now())) {
+            return;
+        }
+        matcher.execute(() -> {
+            try {
+                match(barberId, start);
+            } catch (RuntimeException e) {
+                logger.error("Waitlist matching failed for barber {} at {}", barberId, start, e);
+            }
+        });
+    }
+
+    // Offers that timed out go back to the queue and their slot to the next client;
+    // an offer for a day that is already over expires instead
+    @Scheduled(fixedRate = 60000)
+    public void expireOffers() {
+        LocalDate today = LocalDate.now();
+        for (WaitlistEntry entry : waitlistRepository.findByStatusAndOfferExpiresAtBefore(
+                WaitlistEntry.Status.OFFERED, LocalDateTime.now())) {
+            if (entry.getDate().isBefore(today)) {
+                waitlistRepository.changeStatus(entry.getId(), List.of(WaitlistEntry.Status.OFFERED),
+                        WaitlistEntry.Status.EXPIRED);
+                continue;
+            }
+            Long barberId = entry.getOfferedBarberId();
+            LocalDateTime start = entry.getOfferedStart();
+            requeue(entry, WaitlistEntry.Status.OFFERED);
+            slotFreed(barberId, start);
+        }
+    }
+
+    // One conditional UPDATE, so an entry offered, booked or cancelled meanwhile keeps its status
+    @Scheduled(cron = "${barbershop.waitlist.expire-cron:0 5 0 * * *}")
+    public void expirePastDays() {
+        LocalDate today = LocalDate.now();
+        buckets.keySet().removeIf(key -> key.date.isBefore(today));
+        int expired = waitlistRepository.expireWaitingBefore(today);
+        if (expired > 0) {
+            logger.info("Expired {} waitlist entries of past days", expired);
+        }
+    }
+
+    private void match(Long barberId, LocalDateTime start) {
+        for (int attempt = 0; attempt < MAX_BOOKING_ATTEMPTS; attempt++) {
+            LocalDateTime[] run = availabilityIndex.freeRunAt(barberId, start);
+            if (run == null) {
+                return;
+            }
+            Candidate best = null;
+            for (long key : new long[] { barberId, ANY_BARBER }) {
+                Bucket bucket = buckets.get(new BucketKey(key, start.toLocalDate()));
+                Candidate candidate = bucket != null ? bucket.best(run[0], run[1]) : null;
+                if (candidate != null && (best == null || ARRIVAL_ORDER.compare(candidate.entry, best.entry) < 0)) {
+                    best = candidate;
+                }
+            }
+            if (best == null) {
+                return;
+            }
+
+            WaitlistEntry entry = best.entry;
+            remove(entry);
+            // An entry that left the waitlist meanwhile is skipped and the next one looked at
+            if (!entry.isAutoBook()) {
+                if (waitlistRepository.offer(entry.getId(), barberId, best.start,
+                        LocalDateTime.now().plusMinutes(OFFER_MINUTES)) > 0) {
+                    return;
+                }
+                continue;
+            }
+            if (waitlistRepository.changeStatus(entry.getId(), List.of(WaitlistEntry.Status.WAITING),
+                    WaitlistEntry.Status.BOOKED) == 0) {
+                continue;
+            }
+
+            Barber barber = barberRepository.findById(barberId).orElse(null);
+            if (barber == null) {
+                requeue(entry, WaitlistEntry.Status.BOOKED);
+                return;
+            }
+            try {
+                book(entry, barber, best.start, "WAITLIST");
+                return;
+            } catch (SlotUnavailableException e) {
+                // Someone booked over the run meanwhile; look at what is left of it
+                requeue(entry, WaitlistEntry.Status.BOOKED);
+            }
+        }
+    }
+
+    // The entry has already been claimed (status BOOKED)
+    private Appointment book(WaitlistEntry entry, Barber barber, LocalDateTime start, String createdBy) {
+        Appointment appointment = new Appointment();
+        appointment.setBarber(barber);
+        appointment.setUser(entry.getUser());
+        appointment.setGuestName(entry.getGuestName());
+        appointment.setGuestEmail(entry.getGuestEmail());
+        appointment.setGuestPhone(entry.getGuestPhone());
+        appointment.setAppointmentType(entry.getAppointmentType());
+        appointment.setStartTime(start);
+        appointment.setEndTime(start.plusMinutes(entry.getDurationMinutes()));
+        appointment.setNotes(entry.getNotes());
+        appointment.setStatus(Appointment.Status.BOOKED);
+        appointment.setCreatedAt(LocalDateTime.now());
+        appointment.setCreatedBy(createdBy);
+        appointment.setCreationSource("WAITLIST");
+
+        Appointment saved = bookingService.book(appointment);
+        waitlistRepository.booked(entry.getId(), saved.getId());
+        broadcaster.created(AppointmentSummary.from(saved));
+        return saved;
+    }
+
+    // Back in the queue unless the entry moved on from the expected status meanwhile
+    private void requeue(WaitlistEntry entry, WaitlistEntry.Status from) {
+        if (waitlistRepository.requeue(entry.getId(), from) == 0) {
+            return;
+        }
+        entry.setStatus(WaitlistEntry.Status.WAITING);
+        entry.setOfferedBarberId(null);
+        entry.setOfferedStart(null);
+        entry.setOfferExpiresAt(null);
+        add(entry);
+    }
+
+    private void add(WaitlistEntry entry) {
+        buckets.computeIfAbsent(keyOf(entry), k -> new Bucket()).add(entry);
+    }
+
+    private void remove(WaitlistEntry entry) {
+        buckets.computeIfPresent(keyOf(entry), (k, bucket) -> bucket.remove(entry) ? null : bucket);
+    }
+
+    private static BucketKey keyOf(WaitlistEntry entry) {
+        return new BucketKey(entry.getBarber() != null ? entry.getBarber().getId() : ANY_BARBER, entry.getDate());
+    }
+
+    private static final class Candidate {
+        private final WaitlistEntry entry;
+        private final LocalDateTime start;
+
+        private Candidate(WaitlistEntry entry, LocalDateTime start) {
+            this.entry = entry;
+            this.start = start;
+        }
+    }
+
+    private static final class BucketKey {
+        private final long barberId;
+        private final LocalDate date;
+
+        private BucketKey(long barberId, LocalDate date) {
+            this.barberId = barberId;
+            this.date = date;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey other = (BucketKey) o;
+            return barberId == other.barberId && date.equals(other.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(barberId, date);
+        }
+    }
+
+    private static final class Bucket {
+        // duration in minutes -> window start -> window end -> entries in arrival order
+        private final TreeMap<Integer, TreeMap<LocalTime, TreeMap<LocalTime, NavigableSet<WaitlistEntry>>>> index =
+                new TreeMap<>();
+
+        synchronized void add(WaitlistEntry entry) {
+            index.computeIfAbsent(entry.getDurationMinutes(), d -> new TreeMap<>())
+                    .computeIfAbsent(entry.getWindowStart(), t -> new TreeMap<>())
+                    .computeIfAbsent(entry.getWindowEnd(), t -> new TreeSet<>(ARRIVAL_ORDER))
+                    .add(entry);
+        }
+
+        // True when the bucket became empty
+        synchronized boolean remove(WaitlistEntry entry) {
+            TreeMap<LocalTime, TreeMap<LocalTime, NavigableSet<WaitlistEntry>>> byStart =
+                    index.get(entry.getDurationMinutes());
+            if (byStart == null) {
+                return index.isEmpty();
+            }
+            TreeMap<LocalTime, NavigableSet<WaitlistEntry>> byEnd = byStart.get(entry.getWindowStart());
+            if (byEnd != null) {
+                NavigableSet<WaitlistEntry> entries = byEnd.get(entry.getWindowEnd());
+                if (entries != null) {
+                    entries.removeIf(e -> e.getId().equals(entry.getId()));
+                    if (entries.isEmpty()) {
+                        byEnd.remove(entry.getWindowEnd());
+                    }
+                }
+                if (byEnd.isEmpty()) {
+                    byStart.remove(entry.getWindowStart());
+                }
+            }
+            if (byStart.isEmpty()) {
+                index.remove(entry.getDurationMinutes());
+            }
+            return index.isEmpty();
+        }
+
+        /**
+         * Earliest arrival that fits in the free run, starting at the first grid time
+         * its window allows. Only durations up to the run length, windows opening in
+         * time for it and windows closing after the booking would end are visited;
+         * each of those groups only contributes its earliest arrival.
+         */
+        synchronized Candidate best(LocalDateTime runStart, LocalDateTime runEnd) {
+            int runMinutes = (int) Duration.between(runStart, runEnd).toMinutes();
+            LocalDate date = runStart.toLocalDate();
+            Candidate best = null;
+            for (Map.Entry<Integer, TreeMap<LocalTime, TreeMap<LocalTime, NavigableSet<WaitlistEntry>>>> group
+                    : index.headMap(runMinutes, true).entrySet()) {
+                int minutes = group.getKey();
+                LocalTime lastStart = runEnd.minusMinutes(minutes).toLocalTime();
+                for (Map.Entry<LocalTime, TreeMap<LocalTime, NavigableSet<WaitlistEntry>>> window
+                        : group.getValue().headMap(lastStart, true).entrySet()) {
+                    LocalDateTime windowStart = date.atTime(window.getKey());
+                    LocalDateTime start = onGrid(windowStart.isAfter(runStart) ? windowStart : runStart);
+                    LocalDateTime end = start.plusMinutes(minutes);
+                    if (end.isAfter(runEnd) || !end.toLocalDate().equals(date)) {
+                        continue;
+                    }
+                    for (NavigableSet<WaitlistEntry> entries
+                            : window.getValue().tailMap(end.toLocalTime(), true).values()) {
+                        WaitlistEntry first = entries.first();
+                        if (best == null || ARRIVAL_ORDER.compare(first, best.entry) < 0) {
+                            best = new Candidate(first, start);
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+    }
+
+    // First start of the availability index grid at or after the time
+    private static LocalDateTime onGrid(LocalDateTime time) {
+        int quantum = AvailabilityIndexService.QUANTUM_MINUTES * 60;
+        int seconds = time.toLocalTime().toSecondOfDay();
+        return time.toLocalDate().atStartOfDay().plusSeconds((long) (seconds + quantum - 1) / quantum * quantum);
+    }
+}
@@ -0,0 +1,41 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Sequences for sales and sale_items ids, so Hibernate can pre-allocate ids and
+ * send inserts as JDBC batches (IDENTITY forces one round trip per row).
+ *
+ * Written in Java because the start value depends on the ids already used, in
+ * both the hot and the archive table, and neither H2 nor PostgreSQL accept a
+ * query there. Increment matches allocationSize on the entities.
+ */
+public class V9__Sale_id_sequences extends BaseJavaMigration {
+
+    private static final int ALLOCATION_SIZE = 50;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        try (Statement statement = context.getConnection().createStatement()) {
+            createSequence(statement, "sales_seq", "sales", "sales_archive");
+            createSequence(statement, "sale_items_seq", "sale_items", "sale_items_archive");
+        }
+    }
+
+    private static void createSequence(Statement statement, String sequence, String... tables) throws Exception {
+        long maxId = 0;
+        for (String table : tables) {
+            try (ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+                rs.next();
+                maxId = Math.max(maxId, rs.getLong(1));
+            }
+        }
+        // The pooled optimizer hands out (value - allocationSize, value], so start one block above
+        statement.execute("CREATE SEQUENCE " + sequence + " START WITH " + (maxId + ALLOCATION_SIZE)
+                + " INCREMENT BY " + ALLOCATION_SIZE);
+    }
+}
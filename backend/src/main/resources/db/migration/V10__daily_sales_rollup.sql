@@ -0,0 +1,22 @@
+-- Revenue per day, one row per (day, dimension, key), kept up to date as sales are
+-- committed and rebuilt from sales + sales_archive by the backfill job.
+--   TOTAL           key '*'              units = units sold, sale_count = sales
+--   PAYMENT_METHOD  key UPPER(method)    same as TOTAL, per method
+--   BARBER          key barber id, '-'   item subtotals; sale_count = sales with an item of the key
+--   SERVICE         key appointment type id
+--   PRODUCT         key product id
+-- Only COMPLETED sales are counted.
+
+CREATE TABLE daily_sales_rollup (
+    sale_day DATE NOT NULL,
+    dimension VARCHAR(20) NOT NULL,
+    dim_key VARCHAR(255) NOT NULL,
+    total DOUBLE PRECISION NOT NULL,
+    units BIGINT NOT NULL,
+    sale_count BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (sale_day, dimension, dim_key)
+);
+
+-- Reports read one dimension over a range of days
+CREATE INDEX idx_daily_sales_rollup_dimension_day ON daily_sales_rollup (dimension, sale_day);
@@ -0,0 +1,23 @@
+-- Transactional outbox: side effects of a request are stored as events in the
+-- request's own transaction and delivered afterwards by OutboxService.
+--   status PENDING -> DONE, or DEAD once it ran out of attempts
+--   locked_until is the lease of the node currently delivering the event
+
+CREATE TABLE outbox_events (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    event_type VARCHAR(100) NOT NULL,
+    dedupe_key VARCHAR(255) NOT NULL,
+    payload VARCHAR(10000) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INTEGER DEFAULT 0 NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    next_attempt_at TIMESTAMP NOT NULL,
+    locked_until TIMESTAMP,
+    processed_at TIMESTAMP,
+    last_error VARCHAR(1000),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_outbox_events_dedupe_key UNIQUE (dedupe_key)
+);
+
+-- The dispatcher polls the due PENDING events in id order
+CREATE INDEX idx_outbox_events_status_next ON outbox_events (status, next_attempt_at);
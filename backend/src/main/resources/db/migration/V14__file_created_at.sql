@@ -0,0 +1,6 @@
+-- Upload time of each file, sent as Last-Modified. Files uploaded before this
+-- column existed get the time of the migration.
+
+ALTER TABLE db_files ADD COLUMN created_at TIMESTAMP;
+
+UPDATE db_files SET created_at = CURRENT_TIMESTAMP;
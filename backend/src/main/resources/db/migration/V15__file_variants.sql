@@ -0,0 +1,15 @@
+-- Resized copies of uploaded images, one row per file and variant (THUMB, CARD,
+-- FULL). The content lives in the blob store like any upload; a variant points
+-- at the original's blob when resizing would not make it smaller or the image
+-- cannot be decoded.
+
+CREATE TABLE file_variants (
+    file_id VARCHAR(255) NOT NULL,
+    variant VARCHAR(20) NOT NULL,
+    content_hash VARCHAR(64) NOT NULL,
+    file_type VARCHAR(255) NOT NULL,
+    file_size BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    CONSTRAINT pk_file_variants PRIMARY KEY (file_id, variant),
+    CONSTRAINT fk_file_variants_file FOREIGN KEY (file_id) REFERENCES db_files (id)
+);
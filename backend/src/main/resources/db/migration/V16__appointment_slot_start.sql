@@ -0,0 +1,18 @@
+-- slot_start is start_time while the booking is active and NULL once it is
+-- cancelled, so the unique (barber_id, slot_start) constraint rejects a second
+-- active booking of the same barber at the same start across nodes.
+-- Kept out of the baseline: existing databases are baselined at V1 and skip it.
+
+ALTER TABLE appointments ADD COLUMN slot_start TIMESTAMP;
+
+-- Double bookings made before the constraint existed keep the oldest row in the slot;
+-- the others are left without slot_start until they are moved or cancelled
+UPDATE appointments SET slot_start = start_time
+WHERE (status IS NULL OR status <> 'CANCELLED')
+  AND NOT EXISTS (SELECT 1 FROM appointments older
+                  WHERE older.barber_id = appointments.barber_id
+                    AND older.start_time = appointments.start_time
+                    AND (older.status IS NULL OR older.status <> 'CANCELLED')
+                    AND older.id < appointments.id);
+
+ALTER TABLE appointments ADD CONSTRAINT uk_appointments_barber_slot UNIQUE (barber_id, slot_start);
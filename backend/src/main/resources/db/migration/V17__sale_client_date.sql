@@ -0,0 +1,6 @@
+-- Time the POS recorded each sale. sales.date is stamped by the server when the
+-- sale arrives, so sales queued offline land in the open register period.
+
+ALTER TABLE sales ADD COLUMN client_date TIMESTAMP;
+
+ALTER TABLE sales_archive ADD COLUMN client_date TIMESTAMP;
@@ -0,0 +1,31 @@
+-- Commission rate applied to each sale item, fixed when the sale is saved, so
+-- editing a service or product rate later does not change the commission of
+-- sales already made. Existing items get the rate they were reported with until
+-- now: the item's own product or service rate, else the shop default
+-- (barbershop.commission.*, passed in as Flyway placeholders). Items without a
+-- product count as services, as they did in the report.
+
+ALTER TABLE sale_items ADD COLUMN commission_rate DOUBLE PRECISION;
+
+ALTER TABLE sale_items_archive ADD COLUMN commission_rate DOUBLE PRECISION;
+
+UPDATE sale_items SET commission_rate = COALESCE(
+    (SELECT p.commission_rate FROM products p WHERE p.id = sale_items.product_id), ${product_rate})
+WHERE product_id IS NOT NULL;
+
+UPDATE sale_items SET commission_rate = COALESCE(
+    (SELECT t.commission_rate FROM appointment_types t WHERE t.id = sale_items.appointment_type_id), ${service_rate})
+WHERE product_id IS NULL;
+
+UPDATE sale_items_archive SET commission_rate = COALESCE(
+    (SELECT p.commission_rate FROM products p WHERE p.id = sale_items_archive.product_id), ${product_rate})
+WHERE product_id IS NOT NULL;
+
+UPDATE sale_items_archive SET commission_rate = COALESCE(
+    (SELECT t.commission_rate FROM appointment_types t WHERE t.id = sale_items_archive.appointment_type_id),
+    ${service_rate})
+WHERE product_id IS NULL;
+
+ALTER TABLE sale_items ALTER COLUMN commission_rate SET NOT NULL;
+
+ALTER TABLE sale_items_archive ALTER COLUMN commission_rate SET NOT NULL;
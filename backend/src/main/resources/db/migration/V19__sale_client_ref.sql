@@ -0,0 +1,9 @@
+-- Reference the POS gives each sale it records offline. A batch replayed after a
+-- lost response carries the same references, and the unique index keeps those
+-- sales from being inserted twice. NULL for sales entered online.
+
+ALTER TABLE sales ADD COLUMN client_ref VARCHAR(64);
+
+ALTER TABLE sales_archive ADD COLUMN client_ref VARCHAR(64);
+
+CREATE UNIQUE INDEX uq_sales_client_ref ON sales (client_ref);
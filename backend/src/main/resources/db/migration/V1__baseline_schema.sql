@@ -0,0 +1,167 @@
+-- Baseline: the schema previously generated by Hibernate (ddl-auto=update).
+-- Existing databases are baselined at this version and skip it.
+-- ${blob_type} is BLOB on H2 and OID on PostgreSQL (DB_BLOB_TYPE).
+
+CREATE TABLE users (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    age INTEGER,
+    email VARCHAR(255) NOT NULL,
+    gender VARCHAR(255),
+    name VARCHAR(255) NOT NULL,
+    observations VARCHAR(5000),
+    password VARCHAR(255) NOT NULL,
+    phone VARCHAR(255),
+    role VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE barbers (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    active BOOLEAN DEFAULT TRUE NOT NULL,
+    color VARCHAR(255),
+    name VARCHAR(255),
+    photo_url VARCHAR(255),
+    user_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_barbers_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE TABLE appointment_types (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    color VARCHAR(255),
+    description VARCHAR(255),
+    duration_minutes INTEGER,
+    name VARCHAR(255) NOT NULL,
+    price DOUBLE PRECISION,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_appointment_types_name UNIQUE (name)
+);
+
+CREATE TABLE appointments (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    created_at TIMESTAMP,
+    created_by VARCHAR(255),
+    creation_source VARCHAR(255),
+    end_time TIMESTAMP NOT NULL,
+    guest_email VARCHAR(255),
+    guest_name VARCHAR(255),
+    guest_phone VARCHAR(255),
+    notes VARCHAR(255),
+    start_time TIMESTAMP,
+    status VARCHAR(255),
+    appointment_type_id BIGINT,
+    barber_id BIGINT,
+    user_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_appointments_type FOREIGN KEY (appointment_type_id) REFERENCES appointment_types (id),
+    CONSTRAINT fk_appointments_barber FOREIGN KEY (barber_id) REFERENCES barbers (id),
+    CONSTRAINT fk_appointments_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE TABLE products (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    description VARCHAR(255),
+    image_url VARCHAR(255),
+    name VARCHAR(255) NOT NULL,
+    price DOUBLE PRECISION NOT NULL,
+    stock INTEGER,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE promotions (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    description VARCHAR(255),
+    discount_percentage DOUBLE PRECISION,
+    name VARCHAR(255) NOT NULL,
+    price DOUBLE PRECISION,
+    valid_until DATE,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE sales (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    date TIMESTAMP NOT NULL,
+    guest_name VARCHAR(255),
+    notes VARCHAR(500),
+    payment_method VARCHAR(255) NOT NULL,
+    status VARCHAR(255) NOT NULL,
+    total_amount DOUBLE PRECISION NOT NULL,
+    user_id BIGINT,
+    created_by_user_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_sales_client FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_sales_created_by FOREIGN KEY (created_by_user_id) REFERENCES users (id)
+);
+
+CREATE TABLE sale_items (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    item_name VARCHAR(255) NOT NULL,
+    price DOUBLE PRECISION NOT NULL,
+    quantity INTEGER NOT NULL,
+    subtotal DOUBLE PRECISION NOT NULL,
+    barber_id BIGINT,
+    product_id BIGINT,
+    sale_id BIGINT NOT NULL,
+    appointment_type_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_sale_items_barber FOREIGN KEY (barber_id) REFERENCES barbers (id),
+    CONSTRAINT fk_sale_items_product FOREIGN KEY (product_id) REFERENCES products (id),
+    CONSTRAINT fk_sale_items_sale FOREIGN KEY (sale_id) REFERENCES sales (id),
+    CONSTRAINT fk_sale_items_type FOREIGN KEY (appointment_type_id) REFERENCES appointment_types (id)
+);
+
+CREATE TABLE cash_withdrawals (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    amount DOUBLE PRECISION NOT NULL,
+    description VARCHAR(255) NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    user_id BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_cash_withdrawals_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE TABLE cash_cuts (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    notes VARCHAR(500),
+    timestamp TIMESTAMP NOT NULL,
+    total_actual_amount DOUBLE PRECISION,
+    total_calculated_amount DOUBLE PRECISION NOT NULL,
+    user_id BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_cash_cuts_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE TABLE db_files (
+    id VARCHAR(255) NOT NULL,
+    data ${blob_type},
+    file_name VARCHAR(255),
+    file_type VARCHAR(255),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE leads (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    created_at TIMESTAMP,
+    email VARCHAR(255),
+    interest VARCHAR(255),
+    name VARCHAR(255) NOT NULL,
+    notes TEXT,
+    phone VARCHAR(255),
+    source VARCHAR(255),
+    status VARCHAR(255),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE opportunities (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    estimated_value NUMERIC(19, 2),
+    follow_up_notes TEXT,
+    status VARCHAR(255),
+    updated_at TIMESTAMP,
+    lead_id BIGINT,
+    service_type_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_opportunities_lead FOREIGN KEY (lead_id) REFERENCES leads (id),
+    CONSTRAINT fk_opportunities_type FOREIGN KEY (service_type_id) REFERENCES appointment_types (id)
+);
@@ -0,0 +1,18 @@
+-- Access paths of the calendar, the availability index and the cash register.
+
+-- available-slots / availability index / per-barber keyset pages
+CREATE INDEX idx_appointments_barber_start ON appointments (barber_id, start_time);
+-- "my appointments" and user deletion
+CREATE INDEX idx_appointments_user_start ON appointments (user_id, start_time);
+-- today board, range preload and the (start_time, id) keyset pages
+CREATE INDEX idx_appointments_start_id ON appointments (start_time, id);
+
+-- balance/cut/history since the last cut and daily sales
+CREATE INDEX idx_sales_date ON sales (date);
+-- commission lookups by barber, joined back to the sale
+CREATE INDEX idx_sale_items_barber_sale ON sale_items (barber_id, sale_id);
+-- loading the items of a sale (PostgreSQL does not index foreign keys by itself)
+CREATE INDEX idx_sale_items_sale ON sale_items (sale_id);
+
+CREATE INDEX idx_cash_withdrawals_timestamp ON cash_withdrawals (timestamp);
+CREATE INDEX idx_cash_cuts_timestamp ON cash_cuts (timestamp);
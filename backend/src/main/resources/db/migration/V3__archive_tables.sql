@@ -0,0 +1,69 @@
+-- Cold storage for finished appointments and sales past the archive horizon.
+-- Same columns as the hot tables plus archived_at; references to live rows are
+-- SET NULL so deleting a user, barber or product never trips over history.
+
+CREATE TABLE appointments_archive (
+    id BIGINT NOT NULL,
+    created_at TIMESTAMP,
+    created_by VARCHAR(255),
+    creation_source VARCHAR(255),
+    end_time TIMESTAMP NOT NULL,
+    guest_email VARCHAR(255),
+    guest_name VARCHAR(255),
+    guest_phone VARCHAR(255),
+    notes VARCHAR(255),
+    start_time TIMESTAMP,
+    status VARCHAR(255),
+    appointment_type_id BIGINT,
+    barber_id BIGINT,
+    user_id BIGINT,
+    archived_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_appointments_archive_type FOREIGN KEY (appointment_type_id)
+        REFERENCES appointment_types (id) ON DELETE SET NULL,
+    CONSTRAINT fk_appointments_archive_barber FOREIGN KEY (barber_id) REFERENCES barbers (id) ON DELETE SET NULL,
+    CONSTRAINT fk_appointments_archive_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE SET NULL
+);
+
+CREATE INDEX idx_appointments_archive_start_id ON appointments_archive (start_time, id);
+CREATE INDEX idx_appointments_archive_barber_start ON appointments_archive (barber_id, start_time);
+CREATE INDEX idx_appointments_archive_user_start ON appointments_archive (user_id, start_time);
+
+CREATE TABLE sales_archive (
+    id BIGINT NOT NULL,
+    date TIMESTAMP NOT NULL,
+    guest_name VARCHAR(255),
+    notes VARCHAR(500),
+    payment_method VARCHAR(255) NOT NULL,
+    status VARCHAR(255) NOT NULL,
+    total_amount DOUBLE PRECISION NOT NULL,
+    user_id BIGINT,
+    created_by_user_id BIGINT,
+    archived_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_sales_archive_client FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE SET NULL,
+    CONSTRAINT fk_sales_archive_created_by FOREIGN KEY (created_by_user_id) REFERENCES users (id) ON DELETE SET NULL
+);
+
+CREATE INDEX idx_sales_archive_date ON sales_archive (date);
+
+CREATE TABLE sale_items_archive (
+    id BIGINT NOT NULL,
+    item_name VARCHAR(255) NOT NULL,
+    price DOUBLE PRECISION NOT NULL,
+    quantity INTEGER NOT NULL,
+    subtotal DOUBLE PRECISION NOT NULL,
+    barber_id BIGINT,
+    product_id BIGINT,
+    sale_id BIGINT NOT NULL,
+    appointment_type_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_sale_items_archive_sale FOREIGN KEY (sale_id) REFERENCES sales_archive (id) ON DELETE CASCADE,
+    CONSTRAINT fk_sale_items_archive_barber FOREIGN KEY (barber_id) REFERENCES barbers (id) ON DELETE SET NULL,
+    CONSTRAINT fk_sale_items_archive_product FOREIGN KEY (product_id) REFERENCES products (id) ON DELETE SET NULL,
+    CONSTRAINT fk_sale_items_archive_type FOREIGN KEY (appointment_type_id)
+        REFERENCES appointment_types (id) ON DELETE SET NULL
+);
+
+CREATE INDEX idx_sale_items_archive_sale ON sale_items_archive (sale_id);
+CREATE INDEX idx_sale_items_archive_barber_sale ON sale_items_archive (barber_id, sale_id);
@@ -0,0 +1,34 @@
+-- Recurring bookings: the rule lives in appointment_series, occurrences are
+-- regular appointments tagged with series_id, materialized over a rolling horizon.
+
+CREATE TABLE appointment_series (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    user_id BIGINT,
+    guest_name VARCHAR(255),
+    guest_email VARCHAR(255),
+    guest_phone VARCHAR(255),
+    barber_id BIGINT NOT NULL,
+    appointment_type_id BIGINT,
+    frequency VARCHAR(20) NOT NULL,
+    repeat_interval INTEGER NOT NULL,
+    start_date DATE NOT NULL,
+    time_of_day TIME NOT NULL,
+    duration_minutes INTEGER NOT NULL,
+    until_date DATE,
+    occurrence_count INTEGER,
+    notes VARCHAR(255),
+    status VARCHAR(20) NOT NULL,
+    materialized_until DATE,
+    created_at TIMESTAMP,
+    created_by VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_appointment_series_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_appointment_series_barber FOREIGN KEY (barber_id) REFERENCES barbers (id),
+    CONSTRAINT fk_appointment_series_type FOREIGN KEY (appointment_type_id) REFERENCES appointment_types (id)
+);
+
+ALTER TABLE appointments ADD COLUMN series_id BIGINT;
+ALTER TABLE appointments ADD CONSTRAINT fk_appointments_series FOREIGN KEY (series_id) REFERENCES appointment_series (id);
+CREATE INDEX idx_appointments_series_start ON appointments (series_id, start_time);
+
+ALTER TABLE appointments_archive ADD COLUMN series_id BIGINT;
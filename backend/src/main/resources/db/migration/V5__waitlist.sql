@@ -0,0 +1,29 @@
+-- Clients waiting for a cancellation: a barber (or any), a day and a time window.
+
+CREATE TABLE waitlist_entries (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    user_id BIGINT,
+    guest_name VARCHAR(255),
+    guest_email VARCHAR(255),
+    guest_phone VARCHAR(255),
+    barber_id BIGINT,
+    appointment_type_id BIGINT,
+    duration_minutes INTEGER NOT NULL,
+    date DATE NOT NULL,
+    window_start TIME NOT NULL,
+    window_end TIME NOT NULL,
+    auto_book BOOLEAN DEFAULT FALSE NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    offered_barber_id BIGINT,
+    offered_start TIMESTAMP,
+    offer_expires_at TIMESTAMP,
+    appointment_id BIGINT,
+    notes VARCHAR(255),
+    created_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_waitlist_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE,
+    CONSTRAINT fk_waitlist_barber FOREIGN KEY (barber_id) REFERENCES barbers (id) ON DELETE CASCADE,
+    CONSTRAINT fk_waitlist_type FOREIGN KEY (appointment_type_id) REFERENCES appointment_types (id)
+);
+
+CREATE INDEX idx_waitlist_status_date ON waitlist_entries (status, date);
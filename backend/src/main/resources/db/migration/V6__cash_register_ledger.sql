@@ -0,0 +1,10 @@
+-- Running totals of the open register period (since the last cash cut), one row
+-- per bucket: SALE:<PAYMENT_METHOD> or WITHDRAWAL. Emptied by every cut.
+
+CREATE TABLE cash_register_ledger (
+    bucket VARCHAR(64) NOT NULL,
+    total DOUBLE PRECISION NOT NULL,
+    entries BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (bucket)
+);
@@ -0,0 +1,6 @@
+-- Commission paid to the barber credited on a sale item, as a fraction of the
+-- item subtotal (0.40 = 40%). NULL falls back to the shop-wide default for
+-- services or products (barbershop.commission.*).
+
+ALTER TABLE appointment_types ADD COLUMN commission_rate DOUBLE PRECISION;
+ALTER TABLE products ADD COLUMN commission_rate DOUBLE PRECISION;
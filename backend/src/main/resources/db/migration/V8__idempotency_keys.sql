@@ -0,0 +1,14 @@
+-- Responses of POST requests sent with an Idempotency-Key, shared between nodes
+-- when barbershop.idempotency.shared=true. A row without status_code is a claim
+-- of a request still in progress; rows are purged once expired.
+
+CREATE TABLE idempotency_keys (
+    idempotency_key VARCHAR(300) NOT NULL,
+    status_code INTEGER,
+    response_body VARCHAR(100000),
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    CONSTRAINT pk_idempotency_keys PRIMARY KEY (idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_keys_expires ON idempotency_keys (expires_at);
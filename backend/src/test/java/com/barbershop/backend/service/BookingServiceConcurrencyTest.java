@@ -0,0 +1,184 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.exception.SlotUnavailableException;
+import com.barbershop.backend.model.Appointment;
+import com.barbershop.backend.model.Barber;
+import com.barbershop.backend.repository.AppointmentRepository;
+import com.barbershop.backend.repository.BarberRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class BookingServiceConcurrencyTest {
+
+    private static final int REQUESTS = 300;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private BarberRepository barberRepository;
+
+    @Autowired
+    private AutowireCapableBeanFactory beanFactory;
+
+    @Test
+    void parallelBookingsOfOneSlotBookItOnce() throws Exception {
+        Barber barber = barber(0);
+        LocalDateTime start = LocalDate.now().plusDays(20).atTime(10, 0);
+
+        List<Boolean> results = race(REQUESTS, i -> tryBook(bookingService, barber, start, 30));
+
+        assertEquals(1, results.stream().filter(Boolean::booleanValue).count());
+        assertEquals(1, active(barber, start.toLocalDate()).size());
+    }
+
+    @Test
+    void parallelBookingsOfOverlappingStartsNeverOverlap() throws Exception {
+        Barber barber = barber(0);
+        LocalDateTime base = LocalDate.now().plusDays(21).atTime(10, 0);
+
+        // 45 minute bookings starting every 15 minutes between 10:00 and 12:45
+        race(REQUESTS, i -> tryBook(bookingService, barber, base.plusMinutes(15L * (i % 12)), 45));
+
+        assertNoOverlaps(active(barber, base.toLocalDate()));
+    }
+
+    @Test
+    void nodesWithSeparateIndexesNeverOverlap() throws Exception {
+        Barber barber = barber(1);
+        LocalDateTime base = LocalDate.now().plusDays(22).atTime(10, 0);
+        BookingService otherNode = secondNode();
+
+        // Different start times, so the unique slot key alone would let them through
+        race(REQUESTS, i -> tryBook(i % 2 == 0 ? bookingService : otherNode, barber,
+                base.plusMinutes(15L * (i % 12)), 45));
+
+        assertNoOverlaps(active(barber, base.toLocalDate()));
+    }
+
+    @Test
+    void bookingMadeBehindTheIndexIsSeen() {
+        Barber barber = barber(1);
+        LocalDateTime start = LocalDate.now().plusDays(23).atTime(15, 0);
+        BookingService otherNode = secondNode();
+        // Loads the day into this node's index before the other node books
+        assertTrue(tryBook(bookingService, barber, start.minusHours(2), 30));
+        assertTrue(tryBook(otherNode, barber, start, 60));
+
+        SlotUnavailableException e = assertThrows(SlotUnavailableException.class,
+                () -> bookingService.book(appointment(barber, start.plusMinutes(15), 30)));
+        assertEquals("Error: The selected time was just booked by someone else.", e.getMessage());
+        assertEquals(2, active(barber, start.toLocalDate()).size());
+    }
+
+    // A booking service with its own locks and availability index, like another instance of the app
+    private BookingService secondNode() {
+        AvailabilityIndexService index = beanFactory.createBean(AvailabilityIndexService.class);
+        BookingService node = beanFactory.createBean(BookingService.class);
+        BookingService target = AopTestUtils.getUltimateTargetObject(node);
+        ReflectionTestUtils.setField(target, "availabilityIndex", index);
+        return node;
+    }
+
+    private static boolean tryBook(BookingService service, Barber barber, LocalDateTime start, int minutes) {
+        try {
+            service.book(appointment(barber, start, minutes));
+            return true;
+        } catch (SlotUnavailableException e) {
+            return false;
+        }
+    }
+
+    private static Appointment appointment(Barber barber, LocalDateTime start, int minutes) {
+        Appointment appointment = new Appointment();
+        appointment.setBarber(barber);
+        appointment.setStartTime(start);
+        appointment.setEndTime(start.plusMinutes(minutes));
+        appointment.setStatus(Appointment.Status.BOOKED);
+        appointment.setGuestName("Concurrency Test");
+        appointment.setGuestEmail("concurrency@test.local");
+        appointment.setCreatedAt(LocalDateTime.now());
+        appointment.setCreatedBy("TEST");
+        appointment.setCreationSource("TEST");
+        return appointment;
+    }
+
+    private interface Attempt {
+        boolean run(int i);
+    }
+
+    // Starts every attempt at once and waits for all of them
+    private static List<Boolean> race(int count, Attempt attempt) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch go = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int n = i;
+                Callable<Boolean> task = () -> {
+                    go.await();
+                    return attempt.run(n);
+                };
+                futures.add(pool.submit(task));
+            }
+            go.countDown();
+            List<Boolean> results = new ArrayList<>();
+            for (Future<Boolean> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Barber barber(int index) {
+        return barberRepository.findByActiveTrue().get(index);
+    }
+
+    private List<Appointment> active(Barber barber, LocalDate day) {
+        List<Appointment> active = new ArrayList<>();
+        for (Appointment appointment : appointmentRepository.findByBarberIdAndStartTimeBetween(barber.getId(),
+                day.atStartOfDay(), day.plusDays(1).atStartOfDay())) {
+            if (appointment.getStatus() != Appointment.Status.CANCELLED) {
+                active.add(appointment);
+            }
+        }
+        return active;
+    }
+
+    private static void assertNoOverlaps(List<Appointment> appointments) {
+        assertTrue(!appointments.isEmpty());
+        for (Appointment a : appointments) {
+            for (Appointment b : appointments) {
+                if (a != b) {
+                    assertTrue(!a.getStartTime().isBefore(b.getEndTime()) || !b.getStartTime().isBefore(a.getEndTime()),
+                            "Overlapping bookings " + a.getId() + " and " + b.getId());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.exception.IdempotencyConflictException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class IdempotencyServiceTest {
+
+    private static final int REQUESTS = 200;
+    private static final String SCOPE = "test";
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void committedResponseIsReplayed() {
+        String key = UUID.randomUUID().toString();
+        IdempotencyService.Claim first = transactionTemplate.execute(tx -> {
+            IdempotencyService.Claim claim = idempotencyService.claim(SCOPE, key);
+            claim.succeeded(201, Collections.singletonMap("id", 7));
+            return claim;
+        });
+        assertFalse(first.isReplay());
+
+        IdempotencyService.Claim retry = transactionTemplate.execute(tx -> idempotencyService.claim(SCOPE, key));
+        assertTrue(retry.isReplay());
+        ResponseEntity<String> replay = retry.replay();
+        assertEquals(201, replay.getStatusCodeValue());
+        assertEquals("{\"id\":7}", replay.getBody());
+        assertEquals("true", replay.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void rolledBackRequestReleasesTheKey() {
+        String key = UUID.randomUUID().toString();
+        transactionTemplate.executeWithoutResult(tx -> {
+            idempotencyService.claim(SCOPE, key).succeeded(200, Collections.singletonMap("id", 1));
+            tx.setRollbackOnly();
+        });
+
+        IdempotencyService.Claim retry = transactionTemplate.execute(tx -> idempotencyService.claim(SCOPE, key));
+        assertFalse(retry.isReplay());
+    }
+
+    @Test
+    void keyStillInProgressIsRejected() {
+        String key = UUID.randomUUID().toString();
+        transactionTemplate.executeWithoutResult(tx -> {
+            idempotencyService.claim(SCOPE, key);
+            assertThrows(IdempotencyConflictException.class, () -> idempotencyService.claim(SCOPE, key));
+            // The rejected claim marked the transaction rollback-only
+            tx.setRollbackOnly();
+        });
+    }
+
+    @Test
+    void parallelRetriesRunTheRequestOnce() throws Exception {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger executed = new AtomicInteger();
+
+        List<Boolean> results = race(REQUESTS, i -> {
+            try {
+                return transactionTemplate.execute(tx -> {
+                    IdempotencyService.Claim claim = idempotencyService.claim(SCOPE, key);
+                    if (claim.isReplay()) {
+                        return false;
+                    }
+                    executed.incrementAndGet();
+                    claim.succeeded(200, Collections.singletonMap("attempt", i));
+                    return true;
+                });
+            } catch (IdempotencyConflictException e) {
+                return false;
+            }
+        });
+
+        assertEquals(1, executed.get());
+        assertEquals(1, results.stream().filter(Boolean::booleanValue).count());
+        assertTrue(transactionTemplate.execute(tx -> idempotencyService.claim(SCOPE, key)).isReplay());
+    }
+
+    private interface Attempt {
+        boolean run(int i);
+    }
+
+    // Starts every attempt at once and waits for all of them
+    private static List<Boolean> race(int count, Attempt attempt) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch go = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int n = i;
+                Callable<Boolean> task = () -> {
+                    go.await();
+                    return attempt.run(n);
+                };
+                futures.add(pool.submit(task));
+            }
+            go.countDown();
+            List<Boolean> results = new ArrayList<>();
+            for (Future<Boolean> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.exception.OutOfStockException;
+import com.barbershop.backend.model.Product;
+import com.barbershop.backend.model.Sale;
+import com.barbershop.backend.model.SaleItem;
+import com.barbershop.backend.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class SaleServiceStockTest {
+
+    private static final int REQUESTS = 100;
+    private static final int STOCK = 20;
+
+    @Autowired
+    private SaleService saleService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void parallelSalesNeverOversell() throws Exception {
+        Product product = product(STOCK);
+
+        List<Boolean> results = race(REQUESTS, i -> trySell(product, 1));
+
+        assertEquals(STOCK, results.stream().filter(Boolean::booleanValue).count());
+        assertEquals(0, stockOf(product));
+    }
+
+    @Test
+    void shortSaleIsRejectedWithItsShortage() {
+        Product product = product(3);
+
+        OutOfStockException e = assertThrows(OutOfStockException.class, () -> sell(product, 5));
+
+        assertEquals("Error: Only 3 units of '" + product.getName() + "' are in stock, the sale needs 5.",
+                e.getMessage());
+        Map<String, Object> shortage = e.getShortages().get(0);
+        assertEquals(product.getId(), shortage.get("productId"));
+        assertEquals(5, shortage.get("requested"));
+        assertEquals(3, shortage.get("available"));
+        // Rolled back with the sale
+        assertEquals(3, stockOf(product));
+    }
+
+    @Test
+    void unknownProductIsNotAShortage() {
+        Product missing = new Product();
+        missing.setId(-1L);
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> sell(missing, 1));
+
+        assertFalse(e instanceof OutOfStockException);
+        assertEquals("Error: Product -1 not found.", e.getMessage());
+    }
+
+    private Product product(int stock) {
+        Product product = new Product();
+        product.setName("Stock Test " + UUID.randomUUID().toString().substring(0, 8));
+        product.setPrice(10.0);
+        product.setStock(stock);
+        return productRepository.save(product);
+    }
+
+    private int stockOf(Product product) {
+        return productRepository.findById(product.getId()).get().getStock();
+    }
+
+    private boolean trySell(Product product, int quantity) {
+        try {
+            sell(product, quantity);
+            return true;
+        } catch (OutOfStockException e) {
+            return false;
+        }
+    }
+
+    // Same steps and transaction boundary as POST /api/pos/sales
+    private Sale sell(Product product, int quantity) {
+        Sale sale = new Sale();
+        sale.setPaymentMethod("CASH");
+        SaleItem item = new SaleItem();
+        item.setProduct(product);
+        item.setItemName(product.getName());
+        item.setPrice(10.0);
+        item.setQuantity(quantity);
+        sale.addItem(item);
+        return transactionTemplate.execute(tx -> {
+            assertNull(saleService.normalize(sale, null));
+            return saleService.create(sale);
+        });
+    }
+
+    private interface Attempt {
+        boolean run(int i);
+    }
+
+    // Starts every attempt at once and waits for all of them
+    private static List<Boolean> race(int count, Attempt attempt) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch go = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int n = i;
+                Callable<Boolean> task = () -> {
+                    go.await();
+                    return attempt.run(n);
+                };
+                futures.add(pool.submit(task));
+            }
+            go.countDown();
+            List<Boolean> results = new ArrayList<>();
+            for (Future<Boolean> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.barbershop.backend.service;
+
+import com.barbershop.backend.model.AppointmentType;
+import com.barbershop.backend.model.Barber;
+import com.barbershop.backend.model.Sale;
+import com.barbershop.backend.model.SaleItem;
+import com.barbershop.backend.payload.response.RevenueRow;
+import com.barbershop.backend.repository.AppointmentTypeRepository;
+import com.barbershop.backend.repository.BarberRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest
+class SalesRollupServiceTest {
+
+    private static final int REQUESTS = 100;
+    private static final double PRICE = 15.0;
+
+    // Spellings the POS has sent for the same payment method
+    private static final List<String> PAYMENT_METHODS = Arrays.asList("CASH", "cash", " Cash ", "CARD", "card");
+
+    private static final List<String> DIMENSIONS = Arrays.asList(SalesRollupService.TOTAL,
+            SalesRollupService.PAYMENT_METHOD, SalesRollupService.BARBER, SalesRollupService.SERVICE,
+            SalesRollupService.PRODUCT);
+
+    @Autowired
+    private SaleService saleService;
+
+    @Autowired
+    private SalesRollupService rollupService;
+
+    @Autowired
+    private BarberRepository barberRepository;
+
+    @Autowired
+    private AppointmentTypeRepository appointmentTypeRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void saleIsAddedToItsDay() {
+        LocalDate today = LocalDate.now();
+        double before = total(today);
+        long salesBefore = sales(today);
+
+        // One unit, then two
+        sell(0, "CASH");
+        sell(1, "CARD");
+
+        assertEquals(before + 3 * PRICE, total(today), 0.001);
+        assertEquals(salesBefore + 2, sales(today));
+    }
+
+    @Test
+    void parallelUpsertsMatchARebuild() throws Exception {
+        LocalDate today = LocalDate.now();
+
+        // Concurrent first sales of new keys race on the INSERT of their rows
+        race(REQUESTS, i -> {
+            sell(i, PAYMENT_METHODS.get(i % PAYMENT_METHODS.size()));
+            return true;
+        });
+        List<RevenueRow> upserted = snapshot(today);
+
+        assertFalse(rollupService.rebuild(today, today).isEmpty());
+        assertEquals(snapshot(today), upserted);
+    }
+
+    // Same steps and transaction boundary as POST /api/pos/sales
+    private void sell(int i, String paymentMethod) {
+        List<Barber> barbers = barberRepository.findByActiveTrue();
+        Sale sale = new Sale();
+        sale.setPaymentMethod(paymentMethod);
+        SaleItem item = new SaleItem();
+        item.setService(service());
+        item.setItemName("Rollup Test");
+        item.setPrice(PRICE);
+        item.setQuantity(1 + i % 2);
+        // Every third sale has no barber
+        item.setBarber(i % 3 == 2 ? null : barbers.get(i % barbers.size()));
+        sale.addItem(item);
+        transactionTemplate.executeWithoutResult(tx -> {
+            assertNull(saleService.normalize(sale, null));
+            saleService.create(sale);
+        });
+    }
+
+    private AppointmentType service() {
+        return appointmentTypeRepository.findAll().get(0);
+    }
+
+    private List<RevenueRow> snapshot(LocalDate day) {
+        List<RevenueRow> rows = new ArrayList<>();
+        for (String dimension : DIMENSIONS) {
+            rows.addAll(rollupService.daily(dimension, day, day));
+        }
+        return rows;
+    }
+
+    private double total(LocalDate day) {
+        List<RevenueRow> rows = rollupService.daily(SalesRollupService.TOTAL, day, day);
+        return rows.isEmpty() ? 0 : rows.get(0).getTotal();
+    }
+
+    private long sales(LocalDate day) {
+        List<RevenueRow> rows = rollupService.daily(SalesRollupService.TOTAL, day, day);
+        return rows.isEmpty() ? 0 : rows.get(0).getSales();
+    }
+
+    private interface Attempt {
+        boolean run(int i);
+    }
+
+    // Starts every attempt at once and waits for all of them
+    private static List<Boolean> race(int count, Attempt attempt) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch go = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int n = i;
+                Callable<Boolean> task = () -> {
+                    go.await();
+                    return attempt.run(n);
+                };
+                futures.add(pool.submit(task));
+            }
+            go.countDown();
+            List<Boolean> results = new ArrayList<>();
+            for (Future<Boolean> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -109,7 +109,9 @@ export class ArticlesComponent implements OnInit {
             if (result) {
                 if (item) {
                     // Update
-                    this.handleUpdate(type, item.id, result);
+                    // The stock field is applied as the change the admin made to it
+                    const stockDelta = type === 'PRODUCT' ? (result.stock ?? 0) - (item.stock ?? 0) : 0;
+                    this.handleUpdate(type, item.id, result, stockDelta);
                 } else {
                     // Create
                     this.handleCreate(type, result);
@@ -150,7 +152,7 @@ export class ArticlesComponent implements OnInit {
         }
     }
 
-    handleUpdate(type: string, id: number, data: any) {
+    handleUpdate(type: string, id: number, data: any, stockDelta = 0) {
         if (type === 'SERVICE') {
             this.serviceTypeService.updateType(id, data).subscribe({
                 next: () => {
@@ -162,8 +164,21 @@ export class ArticlesComponent implements OnInit {
         } else if (type === 'PRODUCT') {
             this.productService.updateProduct(id, data).subscribe({
                 next: () => {
-                    this.snackBar.open('Producto actualizado', 'Ok', { duration: 2000 });
-                    this.loadProducts();
+                    if (stockDelta === 0) {
+                        this.snackBar.open('Producto actualizado', 'Ok', { duration: 2000 });
+                        this.loadProducts();
+                        return;
+                    }
+                    this.productService.adjustStock(id, stockDelta).subscribe({
+                        next: () => {
+                            this.snackBar.open('Producto actualizado', 'Ok', { duration: 2000 });
+                            this.loadProducts();
+                        },
+                        error: (e) => {
+                            this.snackBar.open(e.error?.message || 'Error al ajustar el stock', 'Cerrar');
+                            this.loadProducts();
+                        }
+                    });
                 },
                 error: (e) => this.snackBar.open('Error al actualizar', 'Cerrar')
             });
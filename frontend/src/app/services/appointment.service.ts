@@ -1,12 +1,16 @@
 import { Injectable } from '@angular/core';
 import { HttpClient, HttpHeaders } from '@angular/common/http';
-import { Observable } from 'rxjs';
+import { EMPTY, Observable } from 'rxjs';
+import { expand, reduce } from 'rxjs/operators';
 import { StorageService } from './storage.service';
 
 import { environment } from '../../environments/environment';
 
 const API_URL = `${environment.apiUrl}/appointments`;
 
+// Largest page the list endpoints serve
+const PAGE_SIZE = 200;
+
 @Injectable({
     providedIn: 'root'
 })
@@ -16,17 +20,17 @@ export class AppointmentService {
     getAppointments(): Observable<any> {
         const user = this.storageService.getUser();
         const headers = new HttpHeaders({ 'Authorization': 'Bearer ' + user.token });
-        return this.http.get(API_URL, { headers });
+        return this.getAllPages(API_URL, headers);
     }
 
     getBarberAppointments(barberId: number): Observable<any> {
         // Public endpoint - no auth required
-        return this.http.get(API_URL + '/barber/' + barberId);
+        return this.getAllPages(API_URL + '/barber/' + barberId);
     }
 
     getAllAppointments(): Observable<any> {
         // Public endpoint for appointments viewer
-        return this.http.get(API_URL + '/all');
+        return this.getAllPages(API_URL + '/all');
     }
 
     createAppointment(appointment: any): Observable<any> {
@@ -58,7 +62,7 @@ export class AppointmentService {
     getMyBarberAppointments(): Observable<any> {
         const user = this.storageService.getUser();
         const headers = new HttpHeaders({ 'Authorization': 'Bearer ' + user.token });
-        return this.http.get(API_URL + '/my-barber-appointments', { headers });
+        return this.getAllPages(API_URL + '/my-barber-appointments', headers);
     }
 
     updateAppointment(id: number, appointment: any): Observable<any> {
@@ -72,5 +76,20 @@ export class AppointmentService {
         const headers = new HttpHeaders({ 'Authorization': 'Bearer ' + user.token });
         return this.http.get(API_URL + '/' + id, { headers });
     }
-}
 
+    // List endpoints answer one page at a time; follow X-Next-Cursor and return the whole list
+    private getAllPages(url: string, headers?: HttpHeaders): Observable<any[]> {
+        const page = (cursor?: string) => this.http.get<any[]>(url, {
+            headers,
+            observe: 'response',
+            params: cursor ? { size: PAGE_SIZE, cursor } : { size: PAGE_SIZE }
+        });
+        return page().pipe(
+            expand(response => {
+                const next = response.headers.get('X-Next-Cursor');
+                return next ? page(next) : EMPTY;
+            }),
+            reduce((all, response) => all.concat(response.body || []), [] as any[])
+        );
+    }
+}
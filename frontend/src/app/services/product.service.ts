@@ -37,6 +37,11 @@ export class ProductService {
         return this.http.put<Product>(`${this.apiUrl}/${id}`, product);
     }
 
+    // Stock changes are sent as a difference so units sold meanwhile are not overwritten
+    adjustStock(id: number, delta: number): Observable<{ id: number, stock: number }> {
+        return this.http.post<{ id: number, stock: number }>(`${this.apiUrl}/${id}/stock`, { delta });
+    }
+
     deleteProduct(id: number): Observable<any> {
         return this.http.delete(`${this.apiUrl}/${id}`);
     }